@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Locale;
+
+public class TestTemperatureFormatter extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestTemperatureFormatter.class.getSimpleName();
+
+    private static final int ITERATIONS = 10000;
+
+    /*
+        The cached strings must be exactly what the old String.format based implementation
+        produced for every whole degree we display.
+     */
+    public void testMatchesResourceFormat() {
+        TemperatureFormatter formatter = TemperatureFormatter.getInstance(mContext);
+        String format = mContext.getString(R.string.format_temperature);
+        boolean metric = formatter.isMetric();
+        for (int celsius = -60; celsius <= 60; celsius++) {
+            double display = metric ? celsius : (celsius * 1.8) + 32;
+            String expected = String.format(Locale.getDefault(), format, (double) Math.round(display));
+            assertEquals("Error: Formatted temperature doesn't match the resource format",
+                    expected, formatter.format(celsius));
+        }
+    }
+
+    public void testBuffersMatchFormat() {
+        TemperatureFormatter formatter = TemperatureFormatter.getInstance(mContext);
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[16];
+        for (double temperature = -20.5; temperature < 40; temperature += 0.75) {
+            String expected = formatter.format(temperature);
+            builder.setLength(0);
+            assertEquals(expected, formatter.append(builder, temperature).toString());
+            int length = formatter.getChars(temperature, buffer, 0);
+            assertEquals(expected, new String(buffer, 0, length));
+        }
+    }
+
+    /*
+        Benchmark: once the cache is warm, formatting must not produce any garbage.
+     */
+    @SuppressWarnings("deprecation")
+    public void testFormatDoesNotAllocate() {
+        TemperatureFormatter formatter = TemperatureFormatter.getInstance(mContext);
+        char[] buffer = new char[16];
+        // Warm up with the exact values we measure, whatever the unit preference is.
+        for (int i = 0; i < 100; i++) {
+            formatter.format((i % 100) - 50 + 0.3);
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            double temperature = (i % 100) - 50 + 0.3;
+            formatter.format(temperature);
+            formatter.getChars(temperature, buffer, 0);
+        }
+        long elapsed = System.nanoTime() - start;
+        Debug.stopAllocCounting();
+        int allocations = Debug.getThreadAllocCount();
+
+        Log.d(LOG_TAG, "format: " + (elapsed / (2 * ITERATIONS)) + " ns/call, "
+                + allocations + " allocations over " + (2 * ITERATIONS) + " calls");
+        assertEquals("Error: Formatting a cached temperature allocated", 0, allocations);
+    }
+}
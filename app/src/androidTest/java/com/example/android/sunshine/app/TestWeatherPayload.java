@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestWeatherPayload extends AndroidTestCase {
+
+    private static final long PUBLISHED_TIME = 1465376400000L;  // June 8th, 2016
+
+    // The version 2 layout, byte for byte.  The wear module's TestWeatherPayload pins the same
+    // bytes, so the two copies of the class can't drift apart.
+    private static final byte[] PINNED_BYTES = {
+            2, 1, 0, 0, 1, 85, 47, 61, 98, -128, 2,
+            0, 37, 127, -52, 0, -42, -1, -35, 1, -12,
+            0, 37, 127, -51, -1, -1, -1, -120, 0, -45
+    };
+
+    private static WeatherPayload createPayload(boolean metric, int days) {
+        return createPayload(PUBLISHED_TIME, metric, days);
+    }
+
+    private static WeatherPayload createPayload(long publishedTime, boolean metric, int days) {
+        List<WeatherPayload.Day> forecast = new ArrayList<>();
+        for (int i = 0; i < days; i++) {
+            forecast.add(new WeatherPayload.Day(2457548 + i, 21.4 + i, -3.25 - i, 500 + i));
+        }
+        return new WeatherPayload(publishedTime, metric, forecast);
+    }
+
+    public void testRoundTrip() {
+        byte[] bytes = createPayload(false, 5).toBytes();
+        assertEquals("Error: Payload should be an 11 byte header and 10 bytes a day",
+                11 + 10 * 5, bytes.length);
+
+        WeatherPayload decoded = WeatherPayload.fromBytes(bytes);
+        assertNotNull(decoded);
+        assertFalse(decoded.isMetric());
+        assertEquals(PUBLISHED_TIME, decoded.getPublishedTime());
+        assertEquals(5, decoded.getDays().size());
+        for (int i = 0; i < 5; i++) {
+            WeatherPayload.Day day = decoded.getDay(2457548 + i);
+            assertNotNull(day);
+            assertEquals(21.4 + i, day.maxTemp, 0.05);
+            // Tenths of a degree, rounded
+            assertEquals(-3.2 - i, day.minTemp, 0.05);
+            assertEquals(500 + i, day.weatherId);
+        }
+        assertNull(decoded.getDay(2457548 + 5));
+    }
+
+    public void testIdenticalWeatherEncodesIdentically() {
+        byte[] first = createPayload(true, 7).toBytes();
+        byte[] second = createPayload(true, 7).toBytes();
+        assertTrue(Arrays.equals(first, second));
+        assertEquals(WeatherPayload.hash(first), WeatherPayload.hash(second));
+        assertFalse("Error: The unit must be part of the payload",
+                Arrays.equals(first, createPayload(false, 7).toBytes()));
+
+        byte[] republished = createPayload(PUBLISHED_TIME + 1000, true, 7).toBytes();
+        assertFalse(Arrays.equals(first, republished));
+        assertEquals("Error: The hash must only depend on the weather",
+                WeatherPayload.hash(first), WeatherPayload.hash(republished));
+        assertFalse(WeatherPayload.hash(first)
+                == WeatherPayload.hash(createPayload(false, 7).toBytes()));
+    }
+
+    public void testPinnedLayout() {
+        List<WeatherPayload.Day> forecast = new ArrayList<>();
+        forecast.add(new WeatherPayload.Day(2457548, 21.4, -3.5, 500));
+        forecast.add(new WeatherPayload.Day(2457549, -0.1, -12.0, 211));
+        byte[] bytes = new WeatherPayload(PUBLISHED_TIME, true, forecast).toBytes();
+        assertTrue("Error: The layout must be what the watch reads",
+                Arrays.equals(PINNED_BYTES, bytes));
+    }
+
+    public void testKeepsAtMostMaxDays() {
+        WeatherPayload payload = createPayload(true, WeatherPayload.MAX_DAYS + 3);
+        assertEquals(WeatherPayload.MAX_DAYS, payload.getDays().size());
+    }
+
+    public void testRejectsUnknownBytes() {
+        assertNull(WeatherPayload.fromBytes(null));
+        assertNull(WeatherPayload.fromBytes(new byte[0]));
+        assertNull("Error: Unknown versions must be rejected",
+                WeatherPayload.fromBytes(new byte[] { 99, 0, 0 }));
+        byte[] truncated = Arrays.copyOf(createPayload(true, 2).toBytes(), 18);
+        assertNull(WeatherPayload.fromBytes(truncated));
+    }
+}
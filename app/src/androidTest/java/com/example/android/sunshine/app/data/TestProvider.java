@@ -160,6 +160,13 @@ public class TestProvider extends AndroidTestCase {
         // vnd.android.cursor.dir/com.example.android.sunshine.app/location
         assertEquals("Error: the LocationEntry CONTENT_URI should return LocationEntry.CONTENT_TYPE",
                 LocationEntry.CONTENT_TYPE, type);
+
+        // content://com.example.android.sunshine.app/location/weather/1419120000
+        type = mContext.getContentResolver().getType(
+                LocationEntry.buildLocationsWithWeatherForDate(testDate));
+        // vnd.android.cursor.dir/com.example.android.sunshine.app/weather
+        assertEquals("Error: the LocationEntry CONTENT_URI with weather for a date should return WeatherEntry.CONTENT_TYPE",
+                WeatherEntry.CONTENT_TYPE, type);
     }
 
 
@@ -197,6 +204,52 @@ public class TestProvider extends AndroidTestCase {
         TestUtilities.validateCursor("testBasicWeatherQuery", weatherCursor, weatherValues);
     }
 
+    /*
+        Every location with weather for a day comes back from one query, one row each, and a
+        location without weather for that day is left out.
+     */
+    public void testLocationsWithWeatherForDateQuery() {
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        long northPoleRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        ContentValues southPoleValues = TestUtilities.createNorthPoleLocationValues();
+        southPoleValues.put(LocationEntry.COLUMN_LOCATION_SETTING, "00000");
+        southPoleValues.put(LocationEntry.COLUMN_CITY_NAME, "South Pole");
+        long southPoleRowId = db.insert(LocationEntry.TABLE_NAME, null, southPoleValues);
+        ContentValues emptyValues = TestUtilities.createNorthPoleLocationValues();
+        emptyValues.put(LocationEntry.COLUMN_LOCATION_SETTING, "11111");
+        emptyValues.put(LocationEntry.COLUMN_CITY_NAME, "Nowhere");
+        assertTrue("Unable to Insert LocationEntry into the Database",
+                db.insert(LocationEntry.TABLE_NAME, null, emptyValues) != -1);
+
+        db.close();
+
+        // Through the provider, which normalizes the dates as the query does
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI,
+                TestUtilities.createWeatherValues(northPoleRowId));
+        ContentValues southPoleWeather = TestUtilities.createWeatherValues(southPoleRowId);
+        southPoleWeather.put(WeatherEntry.COLUMN_MAX_TEMP, -40);
+        mContext.getContentResolver().insert(WeatherEntry.CONTENT_URI, southPoleWeather);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                LocationEntry.buildLocationsWithWeatherForDate(TestUtilities.TEST_DATE),
+                new String[]{LocationEntry.COLUMN_CITY_NAME, WeatherEntry.COLUMN_MAX_TEMP},
+                null,
+                null,
+                LocationEntry.COLUMN_CITY_NAME + " ASC"
+        );
+        assertEquals("Error: Expected one row per location with weather for the date",
+                2, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals("North Pole", cursor.getString(0));
+        assertEquals(75.0, cursor.getDouble(1));
+        cursor.moveToNext();
+        assertEquals("South Pole", cursor.getString(0));
+        assertEquals(-40.0, cursor.getDouble(1));
+        cursor.close();
+    }
+
     /*
         This test uses the database directly to insert and then uses the ContentProvider to
         read out the data.  Uncomment this test to see if your location queries are
@@ -36,6 +36,9 @@ public class TestUriMatcher extends AndroidTestCase {
     private static final Uri TEST_WEATHER_WITH_LOCATION_AND_DATE_DIR = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(LOCATION_QUERY, TEST_DATE);
     // content://com.example.android.sunshine.app/location"
     private static final Uri TEST_LOCATION_DIR = WeatherContract.LocationEntry.CONTENT_URI;
+    // content://com.example.android.sunshine.app/location/weather/1419033600"
+    private static final Uri TEST_LOCATION_WITH_WEATHER_FOR_DATE_DIR =
+            WeatherContract.LocationEntry.buildLocationsWithWeatherForDate(TEST_DATE);
 
     /*
         Students: This function tests that your UriMatcher returns the correct integer value
@@ -53,5 +56,8 @@ public class TestUriMatcher extends AndroidTestCase {
                 testMatcher.match(TEST_WEATHER_WITH_LOCATION_AND_DATE_DIR), WeatherProvider.WEATHER_WITH_LOCATION_AND_DATE);
         assertEquals("Error: The LOCATION URI was matched incorrectly.",
                 testMatcher.match(TEST_LOCATION_DIR), WeatherProvider.LOCATION);
+        assertEquals("Error: The LOCATION WITH WEATHER FOR DATE URI was matched incorrectly.",
+                testMatcher.match(TEST_LOCATION_WITH_WEATHER_FOR_DATE_DIR),
+                WeatherProvider.LOCATION_WITH_WEATHER_FOR_DATE);
     }
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.sync.DataUpdateDispatcher;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/*
+    Stands in for GCM: builds the bundles the server would push and hands them to ForecastPush
+    the way MyGcmListenerService does.
+ */
+public class TestForecastPush extends AndroidTestCase {
+
+    // Not the preferred location, so the watch and the daily notification aren't told; alert
+    // rules and the widgets, which show every location, still are
+    private static final String TEST_LOCATION = "99705";
+    private static final long TEST_DATE = 1419033600000L;  // December 20th, 2014
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+        ContentValues location = new ContentValues();
+        location.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, TEST_LOCATION);
+        location.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, "North Pole");
+        location.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, 64.7488);
+        location.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, -147.353);
+        Uri locationUri = mContext.getContentResolver()
+                .insert(WeatherContract.LocationEntry.CONTENT_URI, location);
+        assertTrue("Error: Failure to insert the test location",
+                ContentUris.parseId(locationUri) != -1);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+    }
+
+    private static JSONObject createDay(long date, double max, int weatherId, String desc)
+            throws JSONException {
+        return new JSONObject()
+                .put(WeatherContract.WeatherEntry.COLUMN_DATE, date)
+                .put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, max)
+                .put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, max - 10)
+                .put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 60)
+                .put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1013)
+                .put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, 3.5)
+                .put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 270)
+                .put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId)
+                .put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, desc);
+    }
+
+    private static Bundle createPush(String location, JSONObject... days) throws JSONException {
+        JSONArray daysJson = new JSONArray();
+        for (JSONObject day : days) {
+            daysJson.put(day);
+        }
+        Bundle push = new Bundle();
+        push.putString(ForecastPush.EXTRA_TYPE, ForecastPush.TYPE_FORECAST);
+        push.putString(ForecastPush.EXTRA_DATA, new JSONObject()
+                .put(ForecastPush.KEY_LOCATION, location)
+                .put(ForecastPush.KEY_DAYS, daysJson)
+                .toString());
+        return push;
+    }
+
+    private Cursor queryDay(long date) {
+        return mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithDate(TEST_LOCATION, date),
+                new String[]{WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+                        WeatherContract.WeatherEntry.COLUMN_SHORT_DESC},
+                null, null, null);
+    }
+
+    public void testApplyReplacesChangedDays() throws JSONException {
+        Bundle first = createPush(TEST_LOCATION,
+                createDay(TEST_DATE, 20, 800, "Clear"),
+                createDay(TEST_DATE + DAY_IN_MILLIS, 18, 801, "Clouds"));
+        assertTrue(ForecastPush.isForecast(first));
+        assertEquals(2, ForecastPush.apply(mContext, first));
+
+        // Only the second day changed
+        Bundle delta = createPush(TEST_LOCATION,
+                createDay(TEST_DATE + DAY_IN_MILLIS, 11, 500, "Rain"));
+        assertEquals(1, ForecastPush.apply(mContext, delta));
+
+        Cursor cursor = queryDay(TEST_DATE);
+        assertTrue("Error: The first day is gone", cursor.moveToFirst());
+        assertEquals(20.0, cursor.getDouble(0));
+        cursor.close();
+
+        cursor = queryDay(TEST_DATE + DAY_IN_MILLIS);
+        assertEquals("Error: A pushed day must replace the row for its date", 1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(11.0, cursor.getDouble(0));
+        assertEquals("Rain", cursor.getString(1));
+        cursor.close();
+    }
+
+    public void testOtherLocationsStillUpdateWidgets() throws JSONException {
+        DataUpdateDispatcher dispatcher = DataUpdateDispatcher.getInstance(mContext);
+        int requests = dispatcher.getRequestCount();
+        assertEquals(1, ForecastPush.apply(mContext,
+                createPush(TEST_LOCATION, createDay(TEST_DATE, 20, 800, "Clear"))));
+        assertEquals("Error: The multi-city widget must hear of pushes for any location",
+                requests + 1, dispatcher.getRequestCount());
+    }
+
+    public void testUnknownLocationIsNotApplied() throws JSONException {
+        Bundle push = createPush("00000", createDay(TEST_DATE, 20, 800, "Clear"));
+        assertEquals(-1, ForecastPush.apply(mContext, push));
+    }
+
+    public void testInvalidPushIsNotApplied() {
+        Bundle push = new Bundle();
+        push.putString(ForecastPush.EXTRA_TYPE, ForecastPush.TYPE_FORECAST);
+        push.putString(ForecastPush.EXTRA_DATA, "{\"location\": \"" + TEST_LOCATION + "\"}");
+        assertEquals(-1, ForecastPush.apply(mContext, push));
+
+        Bundle alert = new Bundle();
+        alert.putString(ForecastPush.EXTRA_DATA, "{}");
+        assertFalse(ForecastPush.isForecast(alert));
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.List;
+
+public class TestWeatherAlerts extends AndroidTestCase {
+
+    private static final String TEST_LOCATION = "99705";
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private SharedPreferences mPrefs;
+    private String mSavedRules;
+    private String mSavedUnits;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mSavedRules = mPrefs.getString(mContext.getString(R.string.pref_alert_rules_key), null);
+        mSavedUnits = mPrefs.getString(mContext.getString(R.string.pref_units_key), null);
+        clearFired();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPrefs.edit()
+                .putString(mContext.getString(R.string.pref_alert_rules_key), mSavedRules)
+                .putString(mContext.getString(R.string.pref_units_key), mSavedUnits)
+                .commit();
+        clearFired();
+        deleteTestLocation();
+        super.tearDown();
+    }
+
+    private void clearFired() {
+        mContext.getSharedPreferences(WeatherAlerts.PREFS_NAME, Context.MODE_PRIVATE)
+                .edit().clear().commit();
+    }
+
+    private void deleteTestLocation() {
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " IN (SELECT "
+                        + WeatherContract.LocationEntry._ID + " FROM "
+                        + WeatherContract.LocationEntry.TABLE_NAME + " WHERE "
+                        + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?)",
+                new String[]{TEST_LOCATION});
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI,
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{TEST_LOCATION});
+    }
+
+    private long insertTestLocation() {
+        deleteTestLocation();
+        ContentValues location = new ContentValues();
+        location.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, TEST_LOCATION);
+        location.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, "North Pole");
+        location.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, 64.7488);
+        location.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, -147.353);
+        return ContentUris.parseId(mContext.getContentResolver().insert(
+                WeatherContract.LocationEntry.CONTENT_URI, location));
+    }
+
+    private void setPrefs(String rules, int units) {
+        mPrefs.edit()
+                .putString(mContext.getString(R.string.pref_alert_rules_key), rules)
+                .putString(mContext.getString(R.string.pref_units_key), mContext.getString(units))
+                .commit();
+    }
+
+    private static ContentValues createDay(long date, double max, double min, double wind,
+                                           int weatherId) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherContract.WeatherEntry.COLUMN_DATE, date);
+        values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, max);
+        values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, min);
+        values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, 60);
+        values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, 1013);
+        values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, wind);
+        values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, 270);
+        values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+        values.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, "Test");
+        return values;
+    }
+
+    public void testChangedDays() {
+        long locationId = insertTestLocation();
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        ContentValues[] days = {
+                createDay(today, 20, 10, 10, 800),
+                createDay(today + DAY_IN_MILLIS, 20, 10, 10, 800)
+        };
+        for (ContentValues day : days) {
+            day.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
+        }
+        assertEquals("Error: Days not stored yet are all changed",
+                2, WeatherAlerts.changedDays(mContext, TEST_LOCATION, days).length);
+
+        mContext.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, days);
+        assertEquals("Error: Days stored as they are must be left out",
+                0, WeatherAlerts.changedDays(mContext, TEST_LOCATION, days).length);
+
+        days[1].put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, -3.0);
+        ContentValues[] changed = WeatherAlerts.changedDays(mContext, TEST_LOCATION, days);
+        assertEquals(1, changed.length);
+        assertSame(days[1], changed[0]);
+    }
+
+    public void testCompile() {
+        List<AlertRule> rules =
+                AlertRule.compile(" min < 0;wind>=50 ; id = 200 - 232; bad; max ~ 3");
+        assertEquals("Error: Rules that can't be read must be left out", 3, rules.size());
+        assertEquals("min<0", rules.get(0).getKey());
+        assertEquals("wind>=50", rules.get(1).getKey());
+        assertEquals("id=200-232", rules.get(2).getKey());
+
+        assertTrue(AlertRule.compile("").isEmpty());
+        assertTrue("Error: Only = takes a range", AlertRule.compile("max < 1-2").isEmpty());
+    }
+
+    public void testMatches() {
+        List<AlertRule> rules = AlertRule.compile("min < 0; wind > 50; id = 200-232");
+        ContentValues mild = createDay(0, 20, 10, 10, 800);
+        ContentValues storm = createDay(0, 20, 10, 10, 211);
+        ContentValues windy = createDay(0, 20, 10, 60, 800);
+        for (AlertRule rule : rules) {
+            assertFalse(rule.matches(mild, true));
+        }
+        assertTrue(rules.get(2).matches(storm, true));
+        assertTrue(rules.get(1).matches(windy, true));
+
+        // Thresholds are in the units shown: -1C is 30.2F, and 60km/h is about 37mph
+        ContentValues frost = createDay(0, 5, -1, 60, 800);
+        assertTrue(rules.get(0).matches(frost, true));
+        assertFalse(AlertRule.compile("min < 30").get(0).matches(frost, false));
+        assertTrue(AlertRule.compile("min < 31").get(0).matches(frost, false));
+        assertFalse(rules.get(1).matches(frost, false));
+    }
+
+    public void testAlertsFireOncePerDay() {
+        setPrefs("min < 0; id = 200-232", R.string.pref_units_metric);
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        ContentValues[] days = {
+                createDay(today, 2, -3, 10, 211),
+                createDay(today + DAY_IN_MILLIS, 20, 10, 10, 800),
+                createDay(today - DAY_IN_MILLIS, 2, -3, 10, 211)
+        };
+        assertEquals("Error: Both rules match today, no rule matches tomorrow, yesterday is past",
+                2, WeatherAlerts.evaluate(mContext, TEST_LOCATION, days));
+        assertEquals("Error: Alerts must not fire again for the same day",
+                0, WeatherAlerts.evaluate(mContext, TEST_LOCATION, days));
+
+        ContentValues[] update = {createDay(today + DAY_IN_MILLIS, 2, -3, 10, 800)};
+        assertEquals(1, WeatherAlerts.evaluate(mContext, TEST_LOCATION, update));
+        assertEquals("Error: Alerts are kept per location",
+                1, WeatherAlerts.evaluate(mContext, "94043", update));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.widget.ImageView;
+
+import com.bumptech.glide.DrawableRequestBuilder;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.FutureTarget;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the weather art of the selected art pack for the list and the detail screen.
+ * <p>
+ * Every request is made at the exact size it is displayed at, with an explicit transformation,
+ * so that a preloaded image and the one bound to a view share the same cache key.  An art pack
+ * has only a handful of condition images, so they are pinned in memory once the forecast has been
+ * shown and scrolling never waits on a download or a decode.
+ */
+public class ArtLoader {
+
+    // One weather condition id for each image of an art pack.  See
+    // Utility.getArtUrlForWeatherCondition.
+    private static final int[] CONDITION_SAMPLES = {
+            200, // storm
+            300, // light_rain
+            500, // rain
+            600, // snow
+            701, // fog
+            800, // clear
+            801, // light_clouds
+            802  // clouds
+    };
+
+    private static ArtLoader sInstance;
+
+    private final Context mContext;
+    private final int mListIconSize;
+    private final int mTodayIconSize;
+
+    // Main thread only
+    private String mPinnedArtPack;
+    private final List<FutureTarget<?>> mPinned = new ArrayList<>();
+
+    public static synchronized ArtLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArtLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ArtLoader(Context context) {
+        mContext = context;
+        mListIconSize = context.getResources().getDimensionPixelSize(R.dimen.list_icon);
+        mTodayIconSize = context.getResources().getDimensionPixelSize(R.dimen.today_icon);
+    }
+
+    /**
+     * @return the size in pixels of the art in a forecast list row
+     */
+    public int getListIconSize() {
+        return mListIconSize;
+    }
+
+    /**
+     * @return the size in pixels of the art for today, in the list and on the detail screen
+     */
+    public int getTodayIconSize() {
+        return mTodayIconSize;
+    }
+
+    /**
+     * Builds the request for the art of a condition at a given size.  Use this for anything that
+     * should hit the cache entries made by the preloader or by {@link #pinConditionArt()}.
+     */
+    public DrawableRequestBuilder<String> request(RequestManager glide, int weatherId, int size) {
+        return glide.load(Utility.getArtUrlForWeatherCondition(mContext, weatherId))
+                .override(size, size)
+                .fitCenter()
+                .diskCacheStrategy(DiskCacheStrategy.ALL);
+    }
+
+    /**
+     * Binds the art of a condition to a view, falling back to a resource if it can't be loaded.
+     */
+    public void load(RequestManager glide, int weatherId, int size, int errorResId,
+                     ImageView imageView) {
+        request(glide, weatherId, size)
+                .error(errorResId)
+                .crossFade()
+                .into(imageView);
+    }
+
+    /**
+     * Keeps the condition images of the selected art pack decoded at list and today sizes, and
+     * releases those of a previously selected pack.  Cheap to call again when nothing changed.
+     * Main thread only.
+     */
+    public void pinConditionArt() {
+        String artPack = Utility.usingLocalGraphics(mContext) ? null
+                : Utility.getArtUrlForWeatherCondition(mContext, CONDITION_SAMPLES[0]);
+        if (artPack == null ? mPinnedArtPack == null : artPack.equals(mPinnedArtPack)) {
+            return;
+        }
+        unpinConditionArt();
+        if (artPack == null) {
+            return;
+        }
+        mPinnedArtPack = artPack;
+        // Held targets keep their resources active, so the memory cache can't evict them.
+        RequestManager glide = Glide.with(mContext);
+        for (int weatherId : CONDITION_SAMPLES) {
+            mPinned.add(request(glide, weatherId, mListIconSize).into(mListIconSize, mListIconSize));
+            mPinned.add(request(glide, weatherId, mTodayIconSize).into(mTodayIconSize, mTodayIconSize));
+        }
+    }
+
+    /**
+     * Lets the memory cache reclaim the pinned images.  Main thread only.
+     */
+    public void unpinConditionArt() {
+        for (FutureTarget<?> target : mPinned) {
+            Glide.clear(target);
+        }
+        mPinned.clear();
+        mPinnedArtPack = null;
+    }
+
+    /**
+     * Feeds a {@link RecyclerView} laid out by a {@link LinearLayoutManager} to a Glide
+     * {@link ListPreloader}, which only knows about AbsListView scroll callbacks.
+     */
+    public static class RecyclerViewPreloader extends RecyclerView.OnScrollListener {
+        private final ListPreloader<?> mPreloader;
+
+        public RecyclerViewPreloader(ListPreloader<?> preloader) {
+            mPreloader = preloader;
+        }
+
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+            int firstVisible = layoutManager.findFirstVisibleItemPosition();
+            if (firstVisible == RecyclerView.NO_POSITION) {
+                return;
+            }
+            int visibleCount = layoutManager.findLastVisibleItemPosition() - firstVisible + 1;
+            // ListPreloader doesn't use the view.
+            mPreloader.onScroll(null, firstVisible, visibleCount, layoutManager.getItemCount());
+        }
+    }
+}
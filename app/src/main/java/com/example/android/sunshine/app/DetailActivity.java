@@ -38,6 +38,9 @@ public class DetailActivity extends AppCompatActivity {
 
             Bundle arguments = new Bundle();
             arguments.putParcelable(DetailFragment.DETAIL_URI, getIntent().getData());
+            // Only set when we're opened from the forecast list
+            arguments.putParcelable(DetailFragment.DETAIL_DAY,
+                    getIntent().getParcelableExtra(DetailFragment.DETAIL_DAY));
             arguments.putBoolean(DetailFragment.DETAIL_TRANSITION_ANIMATION, true);
 
             DetailFragment fragment = new DetailFragment();
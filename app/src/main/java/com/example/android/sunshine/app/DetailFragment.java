@@ -23,6 +23,7 @@ import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
+import android.support.v4.os.TraceCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.ShareActionProvider;
@@ -38,17 +39,23 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
+import com.example.android.sunshine.app.data.ForecastDay;
+import com.example.android.sunshine.app.data.ForecastRepository;
 import com.example.android.sunshine.app.data.WeatherContract;
-import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.List;
 
 /**
  * A placeholder fragment containing a simple view.
  */
-public class DetailFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor> {
+public class DetailFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor>,
+        ForecastRepository.Listener {
 
     private static final String LOG_TAG = DetailFragment.class.getSimpleName();
     static final String DETAIL_URI = "URI";
     static final String DETAIL_TRANSITION_ANIMATION = "DTA";
+    // The row as the list showed it, when we're opened from the list
+    static final String DETAIL_DAY = "DAY";
 
     private static final String FORECAST_SHARE_HASHTAG = " #SunshineApp";
 
@@ -58,34 +65,14 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
 
     private static final int DETAIL_LOADER = 0;
 
-    private static final String[] DETAIL_COLUMNS = {
-            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
-            WeatherEntry.COLUMN_DATE,
-            WeatherEntry.COLUMN_SHORT_DESC,
-            WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherEntry.COLUMN_HUMIDITY,
-            WeatherEntry.COLUMN_PRESSURE,
-            WeatherEntry.COLUMN_WIND_SPEED,
-            WeatherEntry.COLUMN_DEGREES,
-            WeatherEntry.COLUMN_WEATHER_ID,
-            // This works because the WeatherProvider returns location data joined with
-            // weather data, even though they're stored in two different tables.
-            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING
-    };
-
-    // These indices are tied to DETAIL_COLUMNS.  If DETAIL_COLUMNS changes, these
-    // must change.
-    public static final int COL_WEATHER_ID = 0;
-    public static final int COL_WEATHER_DATE = 1;
-    public static final int COL_WEATHER_DESC = 2;
-    public static final int COL_WEATHER_MAX_TEMP = 3;
-    public static final int COL_WEATHER_MIN_TEMP = 4;
-    public static final int COL_WEATHER_HUMIDITY = 5;
-    public static final int COL_WEATHER_PRESSURE = 6;
-    public static final int COL_WEATHER_WIND_SPEED = 7;
-    public static final int COL_WEATHER_DEGREES = 8;
-    public static final int COL_WEATHER_CONDITION_ID = 9;
+    // Whether we're listening to the ForecastRepository (the usual case) or, for a day the
+    // repository doesn't hold, running our own loader.
+    private boolean mListeningToRepository;
+    private boolean mLoaderStarted;
+
+    // The day on screen, kept so a change of units or art pack can be re-formatted in place
+    private ForecastDay mDay;
+    private String mPresentationKey;
 
     private ImageView mIconView;
     private TextView mDateView;
@@ -111,6 +98,7 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
         if (arguments != null) {
             mUri = arguments.getParcelable(DetailFragment.DETAIL_URI);
             mTransitionAnimation = arguments.getBoolean(DetailFragment.DETAIL_TRANSITION_ANIMATION, false);
+            mDay = arguments.getParcelable(DetailFragment.DETAIL_DAY);
         }
 
         View rootView = inflater.inflate(R.layout.fragment_detail_start, container, false);
@@ -153,8 +141,43 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
-        getLoaderManager().initLoader(DETAIL_LOADER, null, this);
         super.onActivityCreated(savedInstanceState);
+        if ( null == mUri ) {
+            ViewParent vp = getView().getParent();
+            if ( vp instanceof CardView ) {
+                ((View)vp).setVisibility(View.INVISIBLE);
+            }
+            return;
+        }
+        if (null != mDay) {
+            // Show what the list showed on the first frame.  The repository (or our loader)
+            // only rebinds below if the provider has changed the day since.
+            bindDay(mDay);
+            onDetailReady();
+        }
+        startLoading();
+    }
+
+    @Override
+    public void onDestroyView() {
+        ForecastRepository.getInstance(getActivity()).removeListener(this);
+        mListeningToRepository = false;
+        super.onDestroyView();
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        // Units and art pack are changed from the settings screen, which covers us.  The values
+        // we hold are raw, so re-format them rather than loading the day again.
+        if (null != mDay && !Utility.getPresentationKey(getActivity()).equals(mPresentationKey)) {
+            TraceCompat.beginSection("DetailFragment rebind");
+            try {
+                bindDay(mDay);
+            } finally {
+                TraceCompat.endSection();
+            }
+        }
     }
 
     void onLocationChanged( String newLocation ) {
@@ -164,106 +187,160 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
             long date = WeatherContract.WeatherEntry.getDateFromUri(uri);
             Uri updatedUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(newLocation, date);
             mUri = updatedUri;
+            startLoading();
+        }
+    }
+
+    private void startLoading() {
+        String location = WeatherContract.WeatherEntry.getLocationSettingFromUri(mUri);
+        if (location.equals(Utility.getPreferredLocation(getActivity()))) {
+            // The repository holds this location; it delivers right away if it's in memory.
+            if (mLoaderStarted) {
+                getLoaderManager().destroyLoader(DETAIL_LOADER);
+                mLoaderStarted = false;
+            }
+            if (!mListeningToRepository) {
+                mListeningToRepository = true;
+                ForecastRepository.getInstance(getActivity()).addListener(this);
+            } else {
+                List<ForecastDay> forecast = ForecastRepository.getInstance(getActivity()).getForecast();
+                if (null != forecast) {
+                    onForecastLoaded(forecast);
+                }
+            }
+        } else {
+            startLoader();
+        }
+    }
+
+    private void startLoader() {
+        if (mListeningToRepository) {
+            ForecastRepository.getInstance(getActivity()).removeListener(this);
+            mListeningToRepository = false;
+        }
+        if (mLoaderStarted) {
             getLoaderManager().restartLoader(DETAIL_LOADER, null, this);
+        } else {
+            mLoaderStarted = true;
+            getLoaderManager().initLoader(DETAIL_LOADER, null, this);
         }
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        if ( null != mUri ) {
-            // Now create and return a CursorLoader that will take care of
-            // creating a Cursor for the data being displayed.
-            return new CursorLoader(
-                    getActivity(),
-                    mUri,
-                    DETAIL_COLUMNS,
-                    null,
-                    null,
-                    null
-            );
-        }
-        ViewParent vp = getView().getParent();
-        if ( vp instanceof CardView ) {
-            ((View)vp).setVisibility(View.INVISIBLE);
+    public void onForecastLoaded(List<ForecastDay> forecast) {
+        long date = WeatherContract.WeatherEntry.getDateFromUri(mUri);
+        for (ForecastDay day : forecast) {
+            if (day.getDate() == date) {
+                if (!day.equals(mDay)) {
+                    bindDay(day);
+                    onDetailReady();
+                }
+                return;
+            }
         }
-        return null;
+        // Not a day the repository holds (e.g. a past day from a stale widget); query for it.
+        startLoader();
+    }
+
+    @Override
+    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        // Now create and return a CursorLoader that will take care of
+        // creating a Cursor for the data being displayed.
+        return new CursorLoader(
+                getActivity(),
+                mUri,
+                ForecastDay.COLUMNS,
+                null,
+                null,
+                null
+        );
     }
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
         if (data != null && data.moveToFirst()) {
-            ViewParent vp = getView().getParent();
-            if ( vp instanceof CardView ) {
-                ((View)vp).setVisibility(View.VISIBLE);
+            ForecastDay day = ForecastDay.fromCursor(data);
+            if (day.equals(mDay)) {
+                return;
             }
+            bindDay(day);
+        }
+        onDetailReady();
+    }
 
-            // Read weather condition ID from cursor
-            int weatherId = data.getInt(COL_WEATHER_CONDITION_ID);
+    private void bindDay(ForecastDay day) {
+        mDay = day;
+        mPresentationKey = Utility.getPresentationKey(getActivity());
 
-            if ( Utility.usingLocalGraphics(getActivity()) ) {
-                mIconView.setImageResource(Utility.getArtResourceForWeatherCondition(weatherId));
-            } else {
-                // Use weather art image
-                Glide.with(this)
-                        .load(Utility.getArtUrlForWeatherCondition(getActivity(), weatherId))
-                        .error(Utility.getArtResourceForWeatherCondition(weatherId))
-                        .crossFade()
-                        .into(mIconView);
-            }
+        ViewParent vp = getView().getParent();
+        if ( vp instanceof CardView ) {
+            ((View)vp).setVisibility(View.VISIBLE);
+        }
 
-            // Read date from cursor and update views for day of week and date
-            long date = data.getLong(COL_WEATHER_DATE);
-            String dateText = Utility.getFullFriendlyDayString(getActivity(),date);
-            mDateView.setText(dateText);
-
-            // Get description from weather condition ID
-            String description = Utility.getStringForWeatherCondition(getActivity(), weatherId);
-            mDescriptionView.setText(description);
-            mDescriptionView.setContentDescription(getString(R.string.a11y_forecast, description));
-
-            // For accessibility, add a content description to the icon field. Because the ImageView
-            // is independently focusable, it's better to have a description of the image. Using
-            // null is appropriate when the image is purely decorative or when the image already
-            // has text describing it in the same UI component.
-            mIconView.setContentDescription(getString(R.string.a11y_forecast_icon, description));
-
-            // Read high temperature from cursor and update view
-            boolean isMetric = Utility.isMetric(getActivity());
-
-            double high = data.getDouble(COL_WEATHER_MAX_TEMP);
-            String highString = Utility.formatTemperature(getActivity(), high);
-            mHighTempView.setText(highString);
-            mHighTempView.setContentDescription(getString(R.string.a11y_high_temp, highString));
-
-            // Read low temperature from cursor and update view
-            double low = data.getDouble(COL_WEATHER_MIN_TEMP);
-            String lowString = Utility.formatTemperature(getActivity(), low);
-            mLowTempView.setText(lowString);
-            mLowTempView.setContentDescription(getString(R.string.a11y_low_temp, lowString));
-
-            // Read humidity from cursor and update view
-            float humidity = data.getFloat(COL_WEATHER_HUMIDITY);
-            mHumidityView.setText(getActivity().getString(R.string.format_humidity, humidity));
-            mHumidityView.setContentDescription(getString(R.string.a11y_humidity, mHumidityView.getText()));
-            mHumidityLabelView.setContentDescription(mHumidityView.getContentDescription());
-
-            // Read wind speed and direction from cursor and update view
-            float windSpeedStr = data.getFloat(COL_WEATHER_WIND_SPEED);
-            float windDirStr = data.getFloat(COL_WEATHER_DEGREES);
-            mWindView.setText(Utility.getFormattedWind(getActivity(), windSpeedStr, windDirStr));
-            mWindView.setContentDescription(getString(R.string.a11y_wind, mWindView.getText()));
-            mWindLabelView.setContentDescription(mWindView.getContentDescription());
-
-            // Read pressure from cursor and update view
-            float pressure = data.getFloat(COL_WEATHER_PRESSURE);
-            mPressureView.setText(getString(R.string.format_pressure, pressure));
-            mPressureView.setContentDescription(getString(R.string.a11y_pressure, mPressureView.getText()));
-            mPressureLabelView.setContentDescription(mPressureView.getContentDescription());
-
-            // We still need this for the share intent
-            mForecast = String.format("%s - %s - %s/%s", dateText, description, high, low);
+        // Read weather condition ID from the forecast
+        int weatherId = day.getWeatherId();
 
+        if ( Utility.usingLocalGraphics(getActivity()) ) {
+            mIconView.setImageResource(Utility.getArtResourceForWeatherCondition(weatherId));
+        } else {
+            // Use weather art image, at the size it's shown at so the pinned copy is used
+            ArtLoader artLoader = ArtLoader.getInstance(getActivity());
+            artLoader.load(Glide.with(this), weatherId, artLoader.getTodayIconSize(),
+                    Utility.getArtResourceForWeatherCondition(weatherId), mIconView);
         }
+
+        // Read date from the forecast and update views for day of week and date
+        long date = day.getDate();
+        String dateText = Utility.getFullFriendlyDayString(getActivity(),date);
+        mDateView.setText(dateText);
+
+        // Get description from weather condition ID
+        String description = Utility.getStringForWeatherCondition(getActivity(), weatherId);
+        mDescriptionView.setText(description);
+        mDescriptionView.setContentDescription(getString(R.string.a11y_forecast, description));
+
+        // For accessibility, add a content description to the icon field. Because the ImageView
+        // is independently focusable, it's better to have a description of the image. Using
+        // null is appropriate when the image is purely decorative or when the image already
+        // has text describing it in the same UI component.
+        mIconView.setContentDescription(getString(R.string.a11y_forecast_icon, description));
+
+        // Read high temperature from the forecast and update view
+        double high = day.getMaxTemp();
+        String highString = Utility.formatTemperature(getActivity(), high);
+        mHighTempView.setText(highString);
+        mHighTempView.setContentDescription(getString(R.string.a11y_high_temp, highString));
+
+        // Read low temperature from the forecast and update view
+        double low = day.getMinTemp();
+        String lowString = Utility.formatTemperature(getActivity(), low);
+        mLowTempView.setText(lowString);
+        mLowTempView.setContentDescription(getString(R.string.a11y_low_temp, lowString));
+
+        // Read humidity from the forecast and update view
+        float humidity = day.getHumidity();
+        mHumidityView.setText(getActivity().getString(R.string.format_humidity, humidity));
+        mHumidityView.setContentDescription(getString(R.string.a11y_humidity, mHumidityView.getText()));
+        mHumidityLabelView.setContentDescription(mHumidityView.getContentDescription());
+
+        // Read wind speed and direction from the forecast and update view
+        float windSpeedStr = day.getWindSpeed();
+        float windDirStr = day.getDegrees();
+        mWindView.setText(Utility.getFormattedWind(getActivity(), windSpeedStr, windDirStr));
+        mWindView.setContentDescription(getString(R.string.a11y_wind, mWindView.getText()));
+        mWindLabelView.setContentDescription(mWindView.getContentDescription());
+
+        // Read pressure from the forecast and update view
+        float pressure = day.getPressure();
+        mPressureView.setText(getString(R.string.format_pressure, pressure));
+        mPressureView.setContentDescription(getString(R.string.a11y_pressure, mPressureView.getText()));
+        mPressureLabelView.setContentDescription(mPressureView.getContentDescription());
+
+        // We still need this for the share intent
+        mForecast = String.format("%s - %s - %s/%s", dateText, description, high, low);
+    }
+
+    private void onDetailReady() {
         AppCompatActivity activity = (AppCompatActivity)getActivity();
         Toolbar toolbarView = (Toolbar) getView().findViewById(R.id.toolbar);
 
@@ -16,27 +16,30 @@
 package com.example.android.sunshine.app;
 
 import android.content.Context;
-import android.database.Cursor;
-import android.os.Build;
 import android.os.Bundle;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.Checkable;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.bumptech.glide.DrawableRequestBuilder;
 import com.bumptech.glide.Glide;
-import com.example.android.sunshine.app.data.WeatherContract;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestManager;
+import com.example.android.sunshine.app.data.ForecastDay;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
- * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
+ * from a list of {@link ForecastDay} to a {@link android.support.v7.widget.RecyclerView}.
  */
-public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
+public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder>
+        implements ListPreloader.PreloadModelProvider<ForecastDay> {
 
     private static final int VIEW_TYPE_TODAY = 0;
     private static final int VIEW_TYPE_FUTURE_DAY = 1;
@@ -44,11 +47,13 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     // Flag to determine if we want to use a separate view for "today".
     private boolean mUseTodayLayout = true;
 
-    private Cursor mCursor;
+    private List<ForecastDay> mForecast;
     final private Context mContext;
     final private ForecastAdapterOnClickHandler mClickHandler;
     final private View mEmptyView;
     final private ItemChoiceManager mICM;
+    final private ArtLoader mArtLoader;
+    final private RequestManager mGlide;
 
     /**
      * Cache of the children views for a forecast list item.
@@ -73,15 +78,13 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            int dateColumnIndex = mCursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
-            mClickHandler.onClick(mCursor.getLong(dateColumnIndex), this);
+            mClickHandler.onClick(mForecast.get(adapterPosition), this);
             mICM.onClick(this);
         }
     }
 
     public static interface ForecastAdapterOnClickHandler {
-        void onClick(Long date, ForecastAdapterViewHolder vh);
+        void onClick(ForecastDay day, ForecastAdapterViewHolder vh);
     }
 
     public ForecastAdapter(Context context, ForecastAdapterOnClickHandler dh, View emptyView, int choiceMode) {
@@ -90,6 +93,8 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         mEmptyView = emptyView;
         mICM = new ItemChoiceManager(this);
         mICM.setChoiceMode(choiceMode);
+        mArtLoader = ArtLoader.getInstance(context);
+        mGlide = Glide.with(context);
     }
 
     /*
@@ -124,42 +129,42 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
-        mCursor.moveToPosition(position);
-        int weatherId = mCursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+        ForecastDay day = mForecast.get(position);
+        int weatherId = day.getWeatherId();
         int defaultImage;
+        int iconSize;
         boolean useLongToday;
 
         switch (getItemViewType(position)) {
             case VIEW_TYPE_TODAY:
                 defaultImage = Utility.getArtResourceForWeatherCondition(weatherId);
+                iconSize = mArtLoader.getTodayIconSize();
                 useLongToday = true;
                 break;
             default:
                 defaultImage = Utility.getIconResourceForWeatherCondition(weatherId);
+                iconSize = mArtLoader.getListIconSize();
                 useLongToday = false;
         }
 
         if ( Utility.usingLocalGraphics(mContext) ) {
             forecastAdapterViewHolder.mIconView.setImageResource(defaultImage);
         } else {
-            Glide.with(mContext)
-                    .load(Utility.getArtUrlForWeatherCondition(mContext, weatherId))
-                    .error(defaultImage)
-                    .crossFade()
-                    .into(forecastAdapterViewHolder.mIconView);
+            mArtLoader.load(mGlide, weatherId, iconSize, defaultImage,
+                    forecastAdapterViewHolder.mIconView);
         }
 
         // this enables better animations. even if we lose state due to a device rotation,
         // the animator can use this to re-find the original view
         ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, "iconView" + position);
 
-        // Read date from cursor
-        long dateInMillis = mCursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        // Read date from the forecast
+        long dateInMillis = day.getDate();
 
         // Find TextView and set formatted date on it
         forecastAdapterViewHolder.mDateView.setText(Utility.getFriendlyDayString(mContext, dateInMillis, useLongToday));
 
-        // Read weather forecast from cursor
+        // Read weather forecast from the condition id
         String description = Utility.getStringForWeatherCondition(mContext, weatherId);
 
         // Find TextView and set weather forecast on it
@@ -170,14 +175,14 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         // because the information is repeated in the description view and the icon
         // is not individually selectable
 
-        // Read high temperature from cursor
-        double high = mCursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP);
+        // Read high temperature from the forecast
+        double high = day.getMaxTemp();
         String highString = Utility.formatTemperature(mContext, high);
         forecastAdapterViewHolder.mHighTempView.setText(highString);
         forecastAdapterViewHolder.mHighTempView.setContentDescription(mContext.getString(R.string.a11y_high_temp, highString));
 
-        // Read low temperature from cursor
-        double low = mCursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP);
+        // Read low temperature from the forecast
+        double low = day.getMinTemp();
         String lowString = Utility.formatTemperature(mContext, low);
         forecastAdapterViewHolder.mLowTempView.setText(lowString);
         forecastAdapterViewHolder.mLowTempView.setContentDescription(mContext.getString(R.string.a11y_low_temp, lowString));
@@ -208,18 +213,37 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     @Override
     public int getItemCount() {
-        if ( null == mCursor ) return 0;
-        return mCursor.getCount();
+        if ( null == mForecast ) return 0;
+        return mForecast.size();
+    }
+
+    /*
+        Preloading only covers the plain rows: the "today" row is the first one and is on screen
+        as soon as the list is.  Sizes must match onBindViewHolder for the cache to be hit.
+     */
+    @Override
+    public List<ForecastDay> getPreloadItems(int position) {
+        if (null == mForecast || position >= mForecast.size()
+                || getItemViewType(position) == VIEW_TYPE_TODAY
+                || Utility.usingLocalGraphics(mContext)) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(mForecast.get(position));
+    }
+
+    @Override
+    public DrawableRequestBuilder<String> getPreloadRequestBuilder(ForecastDay day) {
+        return mArtLoader.request(mGlide, day.getWeatherId(), mArtLoader.getListIconSize());
     }
 
-    public void swapCursor(Cursor newCursor) {
-        mCursor = newCursor;
+    public void swapForecast(List<ForecastDay> newForecast) {
+        mForecast = newForecast;
         notifyDataSetChanged();
         mEmptyView.setVisibility(getItemCount() == 0 ? View.VISIBLE : View.GONE);
     }
 
-    public Cursor getCursor() {
-        return mCursor;
+    public List<ForecastDay> getForecast() {
+        return mForecast;
     }
 
     public void selectView(RecyclerView.ViewHolder viewHolder) {
@@ -20,16 +20,13 @@ import android.app.Activity;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.res.TypedArray;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.support.design.widget.AppBarLayout;
 import android.support.v4.app.Fragment;
-import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
-import android.support.v4.content.Loader;
+import android.support.v4.os.TraceCompat;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
@@ -45,13 +42,19 @@ import android.view.ViewTreeObserver;
 import android.widget.AbsListView;
 import android.widget.TextView;
 
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.util.FixedPreloadSizeProvider;
+import com.example.android.sunshine.app.data.ForecastDay;
+import com.example.android.sunshine.app.data.ForecastRepository;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 
+import java.util.List;
+
 /**
  * Encapsulates fetching the forecast and displaying it as a {@link android.support.v7.widget.RecyclerView} layout.
  */
-public class ForecastFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor>, SharedPreferences.OnSharedPreferenceChangeListener {
+public class ForecastFragment extends Fragment implements ForecastRepository.Listener, SharedPreferences.OnSharedPreferenceChangeListener {
     public static final String LOG_TAG = ForecastFragment.class.getSimpleName();
     private ForecastAdapter mForecastAdapter;
     private RecyclerView mRecyclerView;
@@ -59,41 +62,13 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     private int mChoiceMode;
     private boolean mHoldForTransition;
     private long mInitialSelectedDate = -1;
+    // Units, art pack and locale the list was last bound with
+    private String mPresentationKey;
 
     private static final String SELECTED_KEY = "selected_position";
 
-    private static final int FORECAST_LOADER = 0;
-    // For the forecast view we're showing only a small subset of the stored data.
-    // Specify the columns we need.
-    private static final String[] FORECAST_COLUMNS = {
-            // In this case the id needs to be fully qualified with a table name, since
-            // the content provider joins the location & weather tables in the background
-            // (both have an _id column)
-            // On the one hand, that's annoying.  On the other, you can search the weather table
-            // using the location set by the user, which is only in the Location table.
-            // So the convenience is worth it.
-            WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID,
-            WeatherContract.WeatherEntry.COLUMN_DATE,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.LocationEntry.COLUMN_COORD_LAT,
-            WeatherContract.LocationEntry.COLUMN_COORD_LONG
-    };
-
-    // These indices are tied to FORECAST_COLUMNS.  If FORECAST_COLUMNS changes, these
-    // must change.
-    static final int COL_WEATHER_ID = 0;
-    static final int COL_WEATHER_DATE = 1;
-    static final int COL_WEATHER_DESC = 2;
-    static final int COL_WEATHER_MAX_TEMP = 3;
-    static final int COL_WEATHER_MIN_TEMP = 4;
-    static final int COL_LOCATION_SETTING = 5;
-    static final int COL_WEATHER_CONDITION_ID = 6;
-    static final int COL_COORD_LAT = 7;
-    static final int COL_COORD_LONG = 8;
+    // How many rows ahead of the scroll direction to fetch art for
+    private static final int ART_PRELOAD_COUNT = 4;
 
     /**
      * A callback interface that all activities containing this fragment must
@@ -103,8 +78,11 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     public interface Callback {
         /**
          * DetailFragmentCallback for when an item has been selected.
+         *
+         * @param day the selected row, so the detail view can show it without querying for it
          */
-        public void onItemSelected(Uri dateUri, ForecastAdapter.ForecastAdapterViewHolder vh);
+        public void onItemSelected(Uri dateUri, ForecastDay day,
+                                   ForecastAdapter.ForecastAdapterViewHolder vh);
     }
 
     public ForecastFragment() {
@@ -121,6 +99,9 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     public void onResume() {
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(getActivity());
         sp.registerOnSharedPreferenceChangeListener(this);
+        // The settings screen covers us, so a change of units or art pack happens while we're
+        // paused.  Catch up now.
+        rebindIfPresentationChanged();
         super.onResume();
     }
 
@@ -187,11 +168,11 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // use it to populate the RecyclerView it's attached to.
         mForecastAdapter = new ForecastAdapter(getActivity(), new ForecastAdapter.ForecastAdapterOnClickHandler() {
             @Override
-            public void onClick(Long date, ForecastAdapter.ForecastAdapterViewHolder vh) {
-                String locationSetting = Utility.getPreferredLocation(getActivity());
+            public void onClick(ForecastDay day, ForecastAdapter.ForecastAdapterViewHolder vh) {
                 ((Callback) getActivity())
                         .onItemSelected(WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
-                                        locationSetting, date),
+                                        day.getLocationSetting(), day.getDate()),
+                                day,
                                 vh
                         );
             }
@@ -200,6 +181,15 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // specify an adapter (see also next example)
         mRecyclerView.setAdapter(mForecastAdapter);
 
+        // Fetch and decode the art of the rows about to scroll into view, at the size they're
+        // shown at.
+        ArtLoader artLoader = ArtLoader.getInstance(getActivity());
+        mRecyclerView.addOnScrollListener(new ArtLoader.RecyclerViewPreloader(
+                new ListPreloader<>(mForecastAdapter,
+                        new FixedPreloadSizeProvider<ForecastDay>(artLoader.getListIconSize(),
+                                artLoader.getListIconSize()),
+                        ART_PRELOAD_COUNT)));
+
         final View parallaxView = rootView.findViewById(R.id.parallax_bar);
         if (null != parallaxView) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
@@ -259,13 +249,21 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         if ( mHoldForTransition ) {
             getActivity().supportPostponeEnterTransition();
         }
-        getLoaderManager().initLoader(FORECAST_LOADER, null, this);
         super.onActivityCreated(savedInstanceState);
+        // Delivers straight away if the repository already holds the forecast.
+        ForecastRepository.getInstance(getActivity()).addListener(this);
+        ArtLoader.getInstance(getActivity()).pinConditionArt();
+    }
+
+    @Override
+    public void onDestroyView() {
+        ForecastRepository.getInstance(getActivity()).removeListener(this);
+        super.onDestroyView();
     }
 
-    // since we read the location when we create the loader, all we need to do is restart things
+    // the repository reads the location when it loads, all we need to do is ask for a reload
     void onLocationChanged() {
-        getLoaderManager().restartLoader(FORECAST_LOADER, null, this);
+        ForecastRepository.getInstance(getActivity()).onLocationChanged();
     }
 
     private void openPreferredLocationInMap() {
@@ -273,11 +271,11 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // intent can is detailed in the "Common Intents" page of Android's developer site:
         // http://developer.android.com/guide/components/intents-common.html#Maps
         if (null != mForecastAdapter) {
-            Cursor c = mForecastAdapter.getCursor();
-            if (null != c) {
-                c.moveToPosition(0);
-                String posLat = c.getString(COL_COORD_LAT);
-                String posLong = c.getString(COL_COORD_LONG);
+            List<ForecastDay> forecast = mForecastAdapter.getForecast();
+            if (null != forecast && !forecast.isEmpty()) {
+                ForecastDay today = forecast.get(0);
+                String posLat = today.getCoordLat();
+                String posLong = today.getCoordLong();
                 Uri geoLocation = Uri.parse("geo:" + posLat + "," + posLong);
 
                 Intent intent = new Intent(Intent.ACTION_VIEW);
@@ -302,33 +300,14 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
 
     @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        // This is called when a new Loader needs to be created.  This
-        // fragment only uses one loader, so we don't care about checking the id.
-
-        // To only show current and future dates, filter the query to return weather only for
-        // dates after or including today.
-
-        // Sort order:  Ascending, by date.
-        String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
-
-        String locationSetting = Utility.getPreferredLocation(getActivity());
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                locationSetting, System.currentTimeMillis());
-
-        return new CursorLoader(getActivity(),
-                weatherForLocationUri,
-                FORECAST_COLUMNS,
-                null,
-                null,
-                sortOrder);
-    }
-
-    @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        mForecastAdapter.swapCursor(data);
+    public void onForecastLoaded(List<ForecastDay> forecast) {
+        if (forecast == mForecastAdapter.getForecast()) {
+            // Nothing changed since we last bound.
+            return;
+        }
+        mForecastAdapter.swapForecast(forecast);
         updateEmptyView();
-        if ( data.getCount() == 0 ) {
+        if ( forecast.isEmpty() ) {
             getActivity().supportStartPostponedEnterTransition();
         } else {
             mRecyclerView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
@@ -341,12 +320,10 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
                         int position = mForecastAdapter.getSelectedItemPosition();
                         if (position == RecyclerView.NO_POSITION &&
                                 -1 != mInitialSelectedDate) {
-                            Cursor data = mForecastAdapter.getCursor();
-                            int count = data.getCount();
-                            int dateColumn = data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
+                            List<ForecastDay> data = mForecastAdapter.getForecast();
+                            int count = data.size();
                             for ( int i = 0; i < count; i++ ) {
-                                data.moveToPosition(i);
-                                if ( data.getLong(dateColumn) == mInitialSelectedDate ) {
+                                if ( data.get(i).getDate() == mInitialSelectedDate ) {
                                     position = i;
                                     break;
                                 }
@@ -382,11 +359,6 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         }
     }
 
-    @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        mForecastAdapter.swapCursor(null);
-    }
-
     public void setUseTodayLayout(boolean useTodayLayout) {
         mUseTodayLayout = useTodayLayout;
         if (mForecastAdapter != null) {
@@ -429,10 +401,36 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         }
     }
 
+    /*
+        Units, art pack and locale only change how the forecast is presented, never the stored
+        values, so re-format the rows we already hold: no requery, no sync.
+     */
+    private void rebindIfPresentationChanged() {
+        String presentationKey = Utility.getPresentationKey(getActivity());
+        if (presentationKey.equals(mPresentationKey)) {
+            return;
+        }
+        boolean firstBind = null == mPresentationKey;
+        mPresentationKey = presentationKey;
+        // The art pack may be one of the things that changed.
+        ArtLoader.getInstance(getActivity()).pinConditionArt();
+        if (!firstBind && null != mForecastAdapter && mForecastAdapter.getItemCount() > 0) {
+            TraceCompat.beginSection("ForecastFragment rebind");
+            try {
+                mForecastAdapter.notifyItemRangeChanged(0, mForecastAdapter.getItemCount());
+            } finally {
+                TraceCompat.endSection();
+            }
+        }
+    }
+
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
         if (key.equals(getString(R.string.pref_location_status_key))) {
             updateEmptyView();
+        } else if (key.equals(getString(R.string.pref_units_key))
+                || key.equals(getString(R.string.pref_art_pack_key))) {
+            rebindIfPresentationChanged();
         }
     }
 }
\ No newline at end of file
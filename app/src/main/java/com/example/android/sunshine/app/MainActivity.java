@@ -30,6 +30,7 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 
+import com.example.android.sunshine.app.data.ForecastDay;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.gcm.RegistrationIntentService;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
@@ -151,13 +152,15 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
     }
 
     @Override
-    public void onItemSelected(Uri contentUri, ForecastAdapter.ForecastAdapterViewHolder vh) {
+    public void onItemSelected(Uri contentUri, ForecastDay day,
+                               ForecastAdapter.ForecastAdapterViewHolder vh) {
         if (mTwoPane) {
             // In two-pane mode, show the detail view in this activity by
             // adding or replacing the detail fragment using a
             // fragment transaction.
             Bundle args = new Bundle();
             args.putParcelable(DetailFragment.DETAIL_URI, contentUri);
+            args.putParcelable(DetailFragment.DETAIL_DAY, day);
 
             DetailFragment fragment = new DetailFragment();
             fragment.setArguments(args);
@@ -167,7 +170,8 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
                     .commit();
         } else {
             Intent intent = new Intent(this, DetailActivity.class)
-                    .setData(contentUri);
+                    .setData(contentUri)
+                    .putExtra(DetailFragment.DETAIL_DAY, day);
 
             ActivityOptionsCompat activityOptions =
                     ActivityOptionsCompat.makeSceneTransitionAnimation(this,
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import java.util.Locale;
+
+/**
+ * Formats temperatures for every surface that shows them (list, detail, widgets, notification,
+ * watch payload) without allocating once warmed up.
+ * <p>
+ * The unit preference and the locale are read once and cached.  Every whole degree in
+ * [{@link #CACHE_MIN}, {@link #CACHE_MAX}] is rendered with the localized format string the
+ * first time it is needed, and after that a call is a conversion, a rounding and an array read.
+ */
+public class TemperatureFormatter implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    // Whole display degrees (in the user's unit) that we keep pre-rendered.  Comfortably wider
+    // than anything OpenWeatherMap will report, in either Celsius or Fahrenheit.
+    static final int CACHE_MIN = -100;
+    static final int CACHE_MAX = 160;
+
+    private static TemperatureFormatter sInstance;
+
+    private final Context mContext;
+    private final String mUnitsKey;
+
+    // Replaced wholesale when the unit or locale changes, so readers on other threads always see
+    // a consistent unit, format and cache.
+    private volatile State mState;
+
+    private static final class State {
+        final boolean metric;
+        final Locale locale;
+        final String format;
+        final String[] rendered = new String[CACHE_MAX - CACHE_MIN + 1];
+
+        State(boolean metric, Locale locale, String format) {
+            this.metric = metric;
+            this.locale = locale;
+            this.format = format;
+        }
+    }
+
+    public static synchronized TemperatureFormatter getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TemperatureFormatter(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private TemperatureFormatter(Context context) {
+        mContext = context;
+        mUnitsKey = context.getString(R.string.pref_units_key);
+        // The preference manager only keeps a weak reference to the listener; we're a process
+        // wide singleton, so that's fine.
+        PreferenceManager.getDefaultSharedPreferences(context)
+                .registerOnSharedPreferenceChangeListener(this);
+        invalidate();
+    }
+
+    /**
+     * @param temperature temperature in Celsius, as stored in the database
+     * @return the temperature in the user's preferred unit, e.g "21°"
+     */
+    public String format(double temperature) {
+        State state = currentState();
+        int degrees = toDisplayDegrees(state, temperature);
+        if (degrees < CACHE_MIN || degrees > CACHE_MAX) {
+            return render(state, degrees);
+        }
+        String[] rendered = state.rendered;
+        String formatted = rendered[degrees - CACHE_MIN];
+        if (formatted == null) {
+            // Racing threads may both render the same value; Strings are immutable so whichever
+            // write wins is fine.
+            formatted = render(state, degrees);
+            rendered[degrees - CACHE_MIN] = formatted;
+        }
+        return formatted;
+    }
+
+    /**
+     * Appends the formatted temperature to a caller owned buffer.
+     */
+    public StringBuilder append(StringBuilder builder, double temperature) {
+        return builder.append(format(temperature));
+    }
+
+    /**
+     * Copies the formatted temperature into a caller owned buffer.
+     *
+     * @return the number of chars written, starting at {@code offset}
+     */
+    public int getChars(double temperature, char[] buffer, int offset) {
+        String formatted = format(temperature);
+        int length = formatted.length();
+        formatted.getChars(0, length, buffer, offset);
+        return length;
+    }
+
+    /**
+     * @return whether temperatures are currently shown in Celsius
+     */
+    public boolean isMetric() {
+        return currentState().metric;
+    }
+
+    /**
+     * Drops the cached unit, locale and rendered strings.  Called automatically when the units
+     * preference changes; the locale is checked on every call.
+     */
+    public void invalidate() {
+        mState = new State(Utility.isMetric(mContext), Locale.getDefault(),
+                mContext.getString(R.string.format_temperature));
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (mUnitsKey.equals(key)) {
+            invalidate();
+        }
+    }
+
+    private State currentState() {
+        State state = mState;
+        if (state.locale != Locale.getDefault()) {
+            // The resources follow the locale, so the format string may have changed as well.
+            invalidate();
+            state = mState;
+        }
+        return state;
+    }
+
+    private static int toDisplayDegrees(State state, double temperature) {
+        // Data stored in Celsius by default.  If user prefers to see in Fahrenheit, convert
+        // the values here.
+        if (!state.metric) {
+            temperature = (temperature * 1.8) + 32;
+        }
+        // For presentation, assume the user doesn't care about tenths of a degree.  Round half
+        // away from zero, which is what "%1.0f" does.
+        return (int) (temperature < 0 ? -Math.floor(-temperature + 0.5)
+                : Math.floor(temperature + 0.5));
+    }
+
+    private static String render(State state, int degrees) {
+        return String.format(state.locale, state.format, (double) degrees);
+    }
+}
@@ -43,16 +43,26 @@ public class Utility {
                 .equals(context.getString(R.string.pref_units_metric));
     }
 
-    public static String formatTemperature(Context context, double temperature) {
-        // Data stored in Celsius by default.  If user prefers to see in Fahrenheit, convert
-        // the values here.
-        String suffix = "\u00B0";
-        if (!isMetric(context)) {
-            temperature = (temperature * 1.8) + 32;
-        }
+    /**
+     * Returns a key for everything that changes how stored weather is presented, but not the
+     * stored weather itself: the units, the art pack and the locale.  Screens holding raw values
+     * compare it to re-format in place instead of querying the database again.
+     *
+     * @param context Context to use for retrieving the preferences
+     * @return a value that changes whenever one of the presentation settings changes
+     */
+    public static String getPresentationKey(Context context) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return prefs.getString(context.getString(R.string.pref_units_key),
+                context.getString(R.string.pref_units_metric))
+                + '|' + prefs.getString(context.getString(R.string.pref_art_pack_key),
+                context.getString(R.string.pref_art_pack_sunshine))
+                + '|' + Locale.getDefault();
+    }
 
-        // For presentation, assume the user doesn't care about tenths of a degree.
-        return String.format(context.getString(R.string.format_temperature), temperature);
+    public static String formatTemperature(Context context, double temperature) {
+        // Unit conversion, rounding and the localized format are all cached by the formatter.
+        return TemperatureFormatter.getInstance(context).format(temperature);
     }
 
     static String formatDate(long dateInMilliseconds) {
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.app.Service;
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.ForecastDay;
+import com.example.android.sunshine.app.data.ForecastRepository;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes the forecast to the watch as a {@link WeatherPayload} in the /weather DataItem.
+ * <p>
+ * One per process, with a single {@link GoogleApiClient} that stays connected while requests
+ * keep coming and is dropped after a minute of quiet.  Bursts of requests (a sync, a unit change
+ * and a watch asking at the same time) are debounced into one publish, and a payload identical
+ * to the last one published is not sent at all.
+ * <p>
+ * Requests from watches are coalesced over a short window as well, and answered with one
+ * forecast read and at most one DataItem write.  If the weather hasn't changed since it was
+ * published, the DataItem is left alone and the payload is sent to the requesting watches only.
+ * <p>
+ * Requests come through {@link UpdateWatchService}, which {@link #stopWhenIdle} keeps started
+ * until they are done, so the process isn't dropped while a request waits on the worker thread.
+ */
+public class WearablePublisher {
+    private static final String LOG_TAG = WearablePublisher.class.getSimpleName();
+
+    static final String WEATHER_PATH = "/weather";
+    static final String KEY_WEATHER = "WEATHER";
+
+    private static final long PUBLISH_DEBOUNCE_MS = 500;
+    private static final long WATCH_REQUEST_WINDOW_MS = TimeUnit.SECONDS.toMillis(2);
+    private static final long IDLE_DISCONNECT_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long CONNECT_TIMEOUT_S = 30;
+
+    private static final int MSG_PUBLISH = 0;
+    private static final int MSG_DISCONNECT = 1;
+    private static final int MSG_ANSWER_WATCHES = 2;
+
+    private static WearablePublisher sInstance;
+
+    private final Context mContext;
+    private final Handler mHandler;
+    // Only used on the worker thread
+    private final GoogleApiClient mGoogleApiClient;
+    private boolean mHasPublished;
+    private int mLastPublishedHash;
+    private byte[] mLastPayload;
+    private final Set<String> mRequestingNodes = new HashSet<>();
+    // Stopped once nothing is pending; older start ids don't need stopping, the latest does it
+    private Service mIdleService;
+    private int mIdleStartId;
+
+    private final AtomicInteger mConnectCount = new AtomicInteger();
+    private final AtomicInteger mPublishCount = new AtomicInteger();
+    private final AtomicInteger mSkipCount = new AtomicInteger();
+    private final AtomicInteger mWatchRequestCount = new AtomicInteger();
+    private final AtomicInteger mWatchReplyCount = new AtomicInteger();
+
+    public static synchronized WearablePublisher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WearablePublisher(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WearablePublisher(Context context) {
+        mContext = context;
+        mGoogleApiClient = new GoogleApiClient.Builder(context)
+                .addApi(Wearable.API)
+                .build();
+        HandlerThread workerThread = new HandlerThread(LOG_TAG);
+        workerThread.start();
+        mHandler = new Handler(workerThread.getLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                switch (msg.what) {
+                    case MSG_PUBLISH:
+                        publish();
+                        stopIfIdle();
+                        return true;
+                    case MSG_ANSWER_WATCHES:
+                        answerWatches();
+                        stopIfIdle();
+                        return true;
+                    case MSG_DISCONNECT:
+                        if (mGoogleApiClient.isConnected()) {
+                            mGoogleApiClient.disconnect();
+                        }
+                        return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Publishes the current forecast shortly, together with any other request made meanwhile.
+     * Any thread.
+     */
+    public void requestPublish() {
+        mHandler.removeMessages(MSG_PUBLISH);
+        mHandler.sendEmptyMessageDelayed(MSG_PUBLISH, PUBLISH_DEBOUNCE_MS);
+    }
+
+    /**
+     * A watch asked for the weather.  Requests arriving within a short window of each other are
+     * answered together.  Any thread.
+     */
+    public void onWatchRequest(final String nodeId) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mWatchRequestCount.incrementAndGet();
+                mRequestingNodes.add(nodeId);
+                if (!mHandler.hasMessages(MSG_ANSWER_WATCHES)) {
+                    mHandler.sendEmptyMessageDelayed(MSG_ANSWER_WATCHES, WATCH_REQUEST_WINDOW_MS);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops a service once the requests pending now and any made meanwhile are done.  Call
+     * after handing the service's request over.  Any thread.
+     */
+    public void stopWhenIdle(final Service service, final int startId) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mIdleService = service;
+                mIdleStartId = startId;
+                stopIfIdle();
+            }
+        });
+    }
+
+    private void stopIfIdle() {
+        if (mIdleService == null || mHandler.hasMessages(MSG_PUBLISH)
+                || mHandler.hasMessages(MSG_ANSWER_WATCHES)) {
+            return;
+        }
+        // A no-op if the service was started again since; that start stops it in turn
+        mIdleService.stopSelf(mIdleStartId);
+        mIdleService = null;
+    }
+
+    /**
+     * @return how many times the client had to (re)connect
+     */
+    public int getConnectCount() {
+        return mConnectCount.get();
+    }
+
+    /**
+     * @return how many payloads were written to the DataItem
+     */
+    public int getPublishCount() {
+        return mPublishCount.get();
+    }
+
+    /**
+     * @return how many publishes were skipped because the payload hadn't changed
+     */
+    public int getSkipCount() {
+        return mSkipCount.get();
+    }
+
+    /**
+     * @return how many requests watches made
+     */
+    public int getWatchRequestCount() {
+        return mWatchRequestCount.get();
+    }
+
+    /**
+     * @return how many replies were sent to watches directly, rather than through the DataItem
+     */
+    public int getWatchReplyCount() {
+        return mWatchReplyCount.get();
+    }
+
+    private void answerWatches() {
+        // Whatever is pending is covered by this publish.
+        mHandler.removeMessages(MSG_PUBLISH);
+        boolean published = publish();
+        if (!published && mLastPayload != null && !mRequestingNodes.isEmpty()
+                && connect()) {
+            // Same weather as the DataItem holds, so only the watches that asked need it.
+            for (String nodeId : mRequestingNodes) {
+                Wearable.MessageApi.sendMessage(mGoogleApiClient, nodeId, WEATHER_PATH,
+                        mLastPayload).await();
+                mWatchReplyCount.incrementAndGet();
+            }
+            scheduleDisconnect();
+        }
+        Log.d(LOG_TAG, "Answered " + mRequestingNodes.size() + " watches, "
+                + mWatchRequestCount.get() + " requests so far, "
+                + mWatchReplyCount.get() + " replies");
+        mRequestingNodes.clear();
+    }
+
+    /**
+     * @return true if the DataItem was written
+     */
+    private boolean publish() {
+        List<ForecastDay> forecast = ForecastRepository.getInstance(mContext).getForecastBlocking();
+        if (forecast.isEmpty()) {
+            return false;
+        }
+        byte[] payload = buildPayload(System.currentTimeMillis(), forecast,
+                TemperatureFormatter.getInstance(mContext).isMetric());
+        // The hash leaves the published time out, so this only compares the weather
+        int hash = WeatherPayload.hash(payload);
+        if (mHasPublished && hash == mLastPublishedHash) {
+            // Watches that ask are answered with the weather as of now, so they count it fresh
+            mLastPayload = payload;
+            Log.d(LOG_TAG, "Weather unchanged, skipped " + mSkipCount.incrementAndGet()
+                    + " publishes");
+            return false;
+        }
+
+        if (!connect()) {
+            return false;
+        }
+
+        // The payload is the only key.  Unchanged weather isn't written at all, so the watch
+        // only hears of a sync that brought nothing new when it asks.
+        PutDataMapRequest weatherMapRequest = PutDataMapRequest.create(WEATHER_PATH);
+        weatherMapRequest.getDataMap().putByteArray(KEY_WEATHER, payload);
+        DataApi.DataItemResult result = Wearable.DataApi
+                .putDataItem(mGoogleApiClient, weatherMapRequest.asPutDataRequest())
+                .await();
+        boolean published = result.getStatus().isSuccess();
+        if (published) {
+            mHasPublished = true;
+            mLastPublishedHash = hash;
+            mLastPayload = payload;
+            Log.d(LOG_TAG, "Published weather: " + mPublishCount.incrementAndGet() + " publishes, "
+                    + mConnectCount.get() + " connects, " + mSkipCount.get() + " skips");
+        } else {
+            Log.w(LOG_TAG, "Could not publish weather: " + result.getStatus());
+        }
+        scheduleDisconnect();
+        return published;
+    }
+
+    private boolean connect() {
+        mHandler.removeMessages(MSG_DISCONNECT);
+        if (mGoogleApiClient.isConnected()) {
+            return true;
+        }
+        mConnectCount.incrementAndGet();
+        ConnectionResult result =
+                mGoogleApiClient.blockingConnect(CONNECT_TIMEOUT_S, TimeUnit.SECONDS);
+        if (!result.isSuccess()) {
+            Log.w(LOG_TAG, "Could not connect to the wearable API: " + result);
+            return false;
+        }
+        return true;
+    }
+
+    private void scheduleDisconnect() {
+        mHandler.removeMessages(MSG_DISCONNECT);
+        mHandler.sendEmptyMessageDelayed(MSG_DISCONNECT, IDLE_DISCONNECT_MS);
+    }
+
+    /**
+     * Encodes raw values for today onwards; the watch formats them and picks the day to show.
+     *
+     * @param publishedTime the time the watch is to judge freshness by
+     */
+    static byte[] buildPayload(long publishedTime, List<ForecastDay> forecast, boolean metric) {
+        List<WeatherPayload.Day> days = new ArrayList<>(WeatherPayload.MAX_DAYS);
+        for (ForecastDay day : forecast) {
+            if (days.size() == WeatherPayload.MAX_DAYS) {
+                break;
+            }
+            days.add(new WeatherPayload.Day(WeatherPayload.getJulianDay(day.getDate()),
+                    day.getMaxTemp(), day.getMinTemp(), day.getWeatherId()));
+        }
+        return new WeatherPayload(publishedTime, metric, days).toBytes();
+    }
+}
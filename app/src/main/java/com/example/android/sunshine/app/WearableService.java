@@ -15,7 +15,11 @@ public class WearableService extends WearableListenerService {
     public void onMessageReceived(MessageEvent messageEvent) {
         super.onMessageReceived(messageEvent);
         if (messageEvent.getPath().equals(WEATHER_PATH)) {
-            startService(new Intent(this, UpdateWatchService.class));
+            // Watches ask in bursts; the publisher answers them together, after this returns, so
+            // the request goes through a service that stays started until it is answered.
+            startService(new Intent(this, UpdateWatchService.class)
+                    .setAction(UpdateWatchService.ACTION_WATCH_REQUEST)
+                    .putExtra(UpdateWatchService.EXTRA_NODE_ID, messageEvent.getSourceNodeId()));
         }
     }
 }
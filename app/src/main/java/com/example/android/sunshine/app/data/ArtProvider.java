@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.FutureTarget;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+
+/**
+ * Serves local, downscaled copies of weather art to other apps, Muzei and the launcher, so that
+ * they don't each download and decode the multi-megabyte originals.
+ * <p>
+ * Copies are made by {@link #getArtUri(Context, String, int)} and
+ * {@link #getIconUri(Context, String, int)} in the cache directory, one per image and size, and
+ * are served read-only.  A copy is named by the SHA-1 of the image's url and the size.  If the
+ * system clears the cache, opening a copy fails until it is made again.
+ */
+public class ArtProvider extends ContentProvider {
+    private static final String LOG_TAG = ArtProvider.class.getSimpleName();
+
+    public static final String CONTENT_AUTHORITY = "com.example.android.sunshine.app.art";
+    public static final Uri CONTENT_URI = Uri.parse("content://" + CONTENT_AUTHORITY);
+
+    private static final String ART_DIR = "art";
+    private static final int JPEG_QUALITY = 90;
+    private static final String ICON_SUFFIX = ".png";
+    // Names are ours, nothing else can be opened through the provider
+    private static final Pattern NAME_PATTERN = Pattern.compile("[0-9a-f]+_[0-9]+(\\.png)?");
+
+    /**
+     * Makes a copy of an image whose shorter side is at most size, unless there is one already.
+     * Blocks on the download, don't call on the main thread.
+     *
+     * @return a content Uri for the copy, or null if the image couldn't be fetched
+     */
+    public static Uri getArtUri(Context context, String imageUrl, int size) {
+        return getUri(context, imageUrl, size, false);
+    }
+
+    /**
+     * Makes a copy of an image that fits in a square of size, keeping its transparency, for
+     * widgets to show by Uri.  Blocks on the download, don't call on the main thread.
+     *
+     * @return a content Uri for the copy, or null if the image couldn't be fetched
+     */
+    public static Uri getIconUri(Context context, String imageUrl, int size) {
+        return getUri(context, imageUrl, size, true);
+    }
+
+    private static Uri getUri(Context context, String imageUrl, int size, boolean icon) {
+        String name = sha1Hex(imageUrl) + "_" + size + (icon ? ICON_SUFFIX : "");
+        File file = new File(getArtDir(context), name);
+        if (!file.exists() && !cacheArt(context, imageUrl, size, icon, file)) {
+            return null;
+        }
+        return CONTENT_URI.buildUpon().appendPath(name).build();
+    }
+
+    private static String sha1Hex(String imageUrl) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(imageUrl.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            // Every platform has both
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static File getArtDir(Context context) {
+        return new File(context.getCacheDir(), ART_DIR);
+    }
+
+    private static boolean cacheArt(Context context, String imageUrl, int size, boolean icon,
+                                    File file) {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(LOG_TAG, "Could not create " + dir);
+            return false;
+        }
+        // Decoding at the requested size lets Glide subsample the original.
+        FutureTarget<Bitmap> target = Glide.with(context.getApplicationContext())
+                .load(imageUrl)
+                .asBitmap()
+                .into(size, size);
+        File tmp = null;
+        try {
+            Bitmap bitmap = target.get();
+            // Icons fit in the square, art only has to cover it
+            float scale = (float) size / (icon
+                    ? Math.max(bitmap.getWidth(), bitmap.getHeight())
+                    : Math.min(bitmap.getWidth(), bitmap.getHeight()));
+            Bitmap scaled = scale < 1
+                    ? Bitmap.createScaledBitmap(bitmap, Math.round(bitmap.getWidth() * scale),
+                            Math.round(bitmap.getHeight() * scale), true)
+                    : bitmap;
+            // Each writer has a file of its own, several can be making the same copy at once
+            tmp = File.createTempFile(file.getName(), ".tmp", dir);
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                if (icon) {
+                    scaled.compress(Bitmap.CompressFormat.PNG, 0, out);
+                } else {
+                    scaled.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+                }
+            } finally {
+                out.close();
+            }
+            if (scaled != bitmap) {
+                scaled.recycle();
+            }
+            // Renamed into place, so a copy being read is never half written.  If another writer
+            // got there first its copy is as good as ours.
+            return tmp.renameTo(file) || file.exists();
+        } catch (InterruptedException | ExecutionException | IOException e) {
+            Log.e(LOG_TAG, "Error caching art from " + imageUrl, e);
+            return false;
+        } finally {
+            Glide.clear(target);
+            if (tmp != null && tmp.exists() && !tmp.delete()) {
+                Log.w(LOG_TAG, "Could not delete " + tmp);
+            }
+        }
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return uri.getPath().endsWith(ICON_SUFFIX) ? "image/png" : "image/jpeg";
+    }
+
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode)
+            throws FileNotFoundException {
+        String name = uri.getLastPathSegment();
+        if (name == null || !NAME_PATTERN.matcher(name).matches()) {
+            throw new FileNotFoundException("Unknown uri: " + uri);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Art is read only: " + uri);
+        }
+        File file = new File(getArtDir(getContext()), name);
+        return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection,
+                        String[] selectionArgs, String sortOrder) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("Art is read only: " + uri);
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Art is read only: " + uri);
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection,
+                      String[] selectionArgs) {
+        throw new UnsupportedOperationException("Art is read only: " + uri);
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * One day of forecast for a location, as read from the {@link WeatherProvider} join of the
+ * weather and location tables.  Values are raw (temperatures in Celsius, wind in km/h), so they
+ * can be re-formatted for any unit without going back to the database.
+ * <p>
+ * Parcelable so that a screen opened from the list can show the row it was handed right away.
+ */
+public class ForecastDay implements Parcelable {
+
+    // Everything the list, the detail screen and the services show for a day.
+    public static final String[] COLUMNS = {
+            // The id needs to be fully qualified with a table name, since the content provider
+            // joins the location & weather tables in the background (both have an _id column)
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            LocationEntry.COLUMN_LOCATION_SETTING,
+            LocationEntry.COLUMN_COORD_LAT,
+            LocationEntry.COLUMN_COORD_LONG
+    };
+
+    // These indices are tied to COLUMNS.  If COLUMNS changes, these must change.
+    static final int COL_ID = 0;
+    static final int COL_DATE = 1;
+    static final int COL_SHORT_DESC = 2;
+    static final int COL_MAX_TEMP = 3;
+    static final int COL_MIN_TEMP = 4;
+    static final int COL_HUMIDITY = 5;
+    static final int COL_PRESSURE = 6;
+    static final int COL_WIND_SPEED = 7;
+    static final int COL_DEGREES = 8;
+    static final int COL_WEATHER_ID = 9;
+    static final int COL_LOCATION_SETTING = 10;
+    static final int COL_COORD_LAT = 11;
+    static final int COL_COORD_LONG = 12;
+
+    private final long mId;
+    private final long mDate;
+    private final String mShortDesc;
+    private final double mMaxTemp;
+    private final double mMinTemp;
+    private final float mHumidity;
+    private final float mPressure;
+    private final float mWindSpeed;
+    private final float mDegrees;
+    private final int mWeatherId;
+    private final String mLocationSetting;
+    private final String mCoordLat;
+    private final String mCoordLong;
+
+    ForecastDay(long id, long date, String shortDesc, double maxTemp, double minTemp,
+                float humidity, float pressure, float windSpeed, float degrees, int weatherId,
+                String locationSetting, String coordLat, String coordLong) {
+        mId = id;
+        mDate = date;
+        mShortDesc = shortDesc;
+        mMaxTemp = maxTemp;
+        mMinTemp = minTemp;
+        mHumidity = humidity;
+        mPressure = pressure;
+        mWindSpeed = windSpeed;
+        mDegrees = degrees;
+        mWeatherId = weatherId;
+        mLocationSetting = locationSetting;
+        mCoordLat = coordLat;
+        mCoordLong = coordLong;
+    }
+
+    /**
+     * Reads the row the cursor is positioned on.  The cursor must have been queried with
+     * {@link #COLUMNS}.
+     */
+    public static ForecastDay fromCursor(Cursor cursor) {
+        return new ForecastDay(
+                cursor.getLong(COL_ID),
+                cursor.getLong(COL_DATE),
+                cursor.getString(COL_SHORT_DESC),
+                cursor.getDouble(COL_MAX_TEMP),
+                cursor.getDouble(COL_MIN_TEMP),
+                cursor.getFloat(COL_HUMIDITY),
+                cursor.getFloat(COL_PRESSURE),
+                cursor.getFloat(COL_WIND_SPEED),
+                cursor.getFloat(COL_DEGREES),
+                cursor.getInt(COL_WEATHER_ID),
+                cursor.getString(COL_LOCATION_SETTING),
+                cursor.getString(COL_COORD_LAT),
+                cursor.getString(COL_COORD_LONG));
+    }
+
+    private ForecastDay(Parcel in) {
+        mId = in.readLong();
+        mDate = in.readLong();
+        mShortDesc = in.readString();
+        mMaxTemp = in.readDouble();
+        mMinTemp = in.readDouble();
+        mHumidity = in.readFloat();
+        mPressure = in.readFloat();
+        mWindSpeed = in.readFloat();
+        mDegrees = in.readFloat();
+        mWeatherId = in.readInt();
+        mLocationSetting = in.readString();
+        mCoordLat = in.readString();
+        mCoordLong = in.readString();
+    }
+
+    public static final Creator<ForecastDay> CREATOR = new Creator<ForecastDay>() {
+        @Override
+        public ForecastDay createFromParcel(Parcel in) {
+            return new ForecastDay(in);
+        }
+
+        @Override
+        public ForecastDay[] newArray(int size) {
+            return new ForecastDay[size];
+        }
+    };
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(mId);
+        dest.writeLong(mDate);
+        dest.writeString(mShortDesc);
+        dest.writeDouble(mMaxTemp);
+        dest.writeDouble(mMinTemp);
+        dest.writeFloat(mHumidity);
+        dest.writeFloat(mPressure);
+        dest.writeFloat(mWindSpeed);
+        dest.writeFloat(mDegrees);
+        dest.writeInt(mWeatherId);
+        dest.writeString(mLocationSetting);
+        dest.writeString(mCoordLat);
+        dest.writeString(mCoordLong);
+    }
+
+    /*
+        Two days are equal when every column is, which is how a screen holding a parceled copy
+        tells whether the provider has changed anything since.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ForecastDay)) return false;
+        ForecastDay that = (ForecastDay) o;
+        return mId == that.mId
+                && mDate == that.mDate
+                && Double.compare(that.mMaxTemp, mMaxTemp) == 0
+                && Double.compare(that.mMinTemp, mMinTemp) == 0
+                && Float.compare(that.mHumidity, mHumidity) == 0
+                && Float.compare(that.mPressure, mPressure) == 0
+                && Float.compare(that.mWindSpeed, mWindSpeed) == 0
+                && Float.compare(that.mDegrees, mDegrees) == 0
+                && mWeatherId == that.mWeatherId
+                && equal(mShortDesc, that.mShortDesc)
+                && equal(mLocationSetting, that.mLocationSetting)
+                && equal(mCoordLat, that.mCoordLat)
+                && equal(mCoordLong, that.mCoordLong);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (mId ^ (mId >>> 32));
+        result = 31 * result + (int) (mDate ^ (mDate >>> 32));
+        long temp = Double.doubleToLongBits(mMaxTemp);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        temp = Double.doubleToLongBits(mMinTemp);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        result = 31 * result + Float.floatToIntBits(mHumidity);
+        result = 31 * result + Float.floatToIntBits(mPressure);
+        result = 31 * result + Float.floatToIntBits(mWindSpeed);
+        result = 31 * result + Float.floatToIntBits(mDegrees);
+        result = 31 * result + mWeatherId;
+        result = 31 * result + (mShortDesc != null ? mShortDesc.hashCode() : 0);
+        result = 31 * result + (mLocationSetting != null ? mLocationSetting.hashCode() : 0);
+        return result;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    /**
+     * @return the normalized date of this forecast, local midnight as from
+     *         {@link WeatherContract#normalizeDate(long)}
+     */
+    public long getDate() {
+        return mDate;
+    }
+
+    public String getShortDesc() {
+        return mShortDesc;
+    }
+
+    public double getMaxTemp() {
+        return mMaxTemp;
+    }
+
+    public double getMinTemp() {
+        return mMinTemp;
+    }
+
+    public float getHumidity() {
+        return mHumidity;
+    }
+
+    public float getPressure() {
+        return mPressure;
+    }
+
+    public float getWindSpeed() {
+        return mWindSpeed;
+    }
+
+    public float getDegrees() {
+        return mDegrees;
+    }
+
+    public int getWeatherId() {
+        return mWeatherId;
+    }
+
+    public String getLocationSetting() {
+        return mLocationSetting;
+    }
+
+    public String getCoordLat() {
+        return mCoordLat;
+    }
+
+    public String getCoordLong() {
+        return mCoordLong;
+    }
+}
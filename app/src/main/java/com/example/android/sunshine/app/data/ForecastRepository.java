@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.util.Log;
+
+import com.example.android.sunshine.app.Utility;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * App-wide, in-memory copy of the forecast for the preferred location.
+ * <p>
+ * The forecast is queried from {@link WeatherProvider} once per provider change (bursts of
+ * changes are debounced) and shared by the fragments and the services, so creating a fragment
+ * or switching panes is served from memory instead of another join against SQLite.
+ * <p>
+ * Listeners are registered and called on the main thread.  Services running on a background
+ * thread can use {@link #getForecastBlocking()}.
+ */
+public class ForecastRepository {
+    private static final String LOG_TAG = ForecastRepository.class.getSimpleName();
+
+    // A sync is a bulk insert followed by a delete of old rows, so wait for the provider to
+    // settle before requerying.
+    private static final long REFRESH_DEBOUNCE_MS = 300;
+
+    private static final int MSG_REFRESH = 0;
+
+    private static ForecastRepository sInstance;
+
+    // Bumped synchronously by WeatherProvider on every write, so a service that reads right
+    // after writing never gets the previous forecast back.
+    private static final AtomicInteger sProviderGeneration = new AtomicInteger();
+
+    public interface Listener {
+        /**
+         * @param forecast the forecast for the preferred location, from today onwards, sorted by
+         *                 date.  Never null, possibly empty.  Must not be modified.
+         */
+        void onForecastLoaded(List<ForecastDay> forecast);
+    }
+
+    private static final class Snapshot {
+        final String locationSetting;
+        final long startDate;
+        final int generation;
+        final List<ForecastDay> days;
+
+        Snapshot(String locationSetting, long startDate, int generation, List<ForecastDay> days) {
+            this.locationSetting = locationSetting;
+            this.startDate = startDate;
+            this.generation = generation;
+            this.days = days;
+        }
+    }
+
+    private final Context mContext;
+    private final Handler mWorkerHandler;
+    private final Handler mMainHandler;
+    // Only touched on the main thread
+    private final List<Listener> mListeners = new ArrayList<>();
+    private volatile int mListenerCount;
+    private volatile Snapshot mSnapshot;
+
+    public static synchronized ForecastRepository getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ForecastRepository(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ForecastRepository(Context context) {
+        mContext = context;
+        HandlerThread workerThread = new HandlerThread(LOG_TAG);
+        workerThread.start();
+        mWorkerHandler = new Handler(workerThread.getLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                if (msg.what == MSG_REFRESH) {
+                    load();
+                    return true;
+                }
+                return false;
+            }
+        });
+        mMainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Called by {@link WeatherProvider} whenever weather or location data changes.
+     */
+    static void onProviderChanged() {
+        sProviderGeneration.incrementAndGet();
+        ForecastRepository repository;
+        synchronized (ForecastRepository.class) {
+            repository = sInstance;
+        }
+        if (repository != null && repository.mListenerCount > 0) {
+            repository.scheduleRefresh(REFRESH_DEBOUNCE_MS);
+        }
+    }
+
+    /**
+     * Registers a listener.  If the forecast in memory is current it is delivered before this
+     * method returns, otherwise as soon as it's loaded.  Main thread only.
+     */
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+        mListenerCount = mListeners.size();
+        Snapshot snapshot = mSnapshot;
+        if (isCurrent(snapshot)) {
+            listener.onForecastLoaded(snapshot.days);
+        } else {
+            scheduleRefresh(0);
+        }
+    }
+
+    /**
+     * Main thread only.
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+        mListenerCount = mListeners.size();
+    }
+
+    /**
+     * @return the forecast in memory if it is current, null if it needs to be (re)loaded
+     */
+    public List<ForecastDay> getForecast() {
+        Snapshot snapshot = mSnapshot;
+        return isCurrent(snapshot) ? snapshot.days : null;
+    }
+
+    /**
+     * Returns the forecast, querying the provider on the calling thread if the copy in memory is
+     * not current.  Must not be called on the main thread.
+     */
+    public List<ForecastDay> getForecastBlocking() {
+        Snapshot snapshot = mSnapshot;
+        if (isCurrent(snapshot)) {
+            return snapshot.days;
+        }
+        return load().days;
+    }
+
+    /**
+     * @param date a normalized date, as stored in the database
+     * @return the forecast in memory for that day, or null if it's not in memory
+     */
+    public ForecastDay getDay(long date) {
+        List<ForecastDay> forecast = getForecast();
+        if (forecast != null) {
+            for (ForecastDay day : forecast) {
+                if (day.getDate() == date) {
+                    return day;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The preferred location changed; reload right away.
+     */
+    public void onLocationChanged() {
+        scheduleRefresh(0);
+    }
+
+    private void scheduleRefresh(long delayMs) {
+        mWorkerHandler.removeMessages(MSG_REFRESH);
+        mWorkerHandler.sendEmptyMessageDelayed(MSG_REFRESH, delayMs);
+    }
+
+    private boolean isCurrent(Snapshot snapshot) {
+        return snapshot != null
+                && snapshot.generation == sProviderGeneration.get()
+                && snapshot.startDate == WeatherContract.normalizeDate(System.currentTimeMillis())
+                && snapshot.locationSetting.equals(Utility.getPreferredLocation(mContext));
+    }
+
+    // Serialized so that the worker and a service thread never query at the same time.
+    private synchronized Snapshot load() {
+        Snapshot current = mSnapshot;
+        if (isCurrent(current)) {
+            // Someone else loaded it while we were waiting for the lock.
+            return current;
+        }
+
+        // Read the generation first: a write racing with the query leaves us stale, not wrong.
+        int generation = sProviderGeneration.get();
+        String locationSetting = Utility.getPreferredLocation(mContext);
+        long startDate = WeatherContract.normalizeDate(System.currentTimeMillis());
+        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                locationSetting, startDate);
+
+        List<ForecastDay> days = new ArrayList<>();
+        Cursor cursor = mContext.getContentResolver().query(weatherForLocationUri,
+                ForecastDay.COLUMNS, null, null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                days.add(ForecastDay.fromCursor(cursor));
+            }
+            cursor.close();
+        }
+        Log.d(LOG_TAG, "Loaded " + days.size() + " days for " + locationSetting);
+
+        final Snapshot snapshot = new Snapshot(locationSetting, startDate, generation,
+                Collections.unmodifiableList(days));
+        mSnapshot = snapshot;
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Don't hand out a forecast that has been superseded in the meantime.
+                if (mSnapshot != snapshot) {
+                    return;
+                }
+                // Copy, listeners may unregister themselves while being notified.
+                for (Listener listener : new ArrayList<>(mListeners)) {
+                    listener.onForecastLoaded(snapshot.days);
+                }
+            }
+        });
+        return snapshot;
+    }
+}
@@ -84,6 +84,19 @@ public class WeatherContract {
         public static Uri buildLocationUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
+
+        /*
+            Every location joined with its weather for one day, one row per location that has
+            weather for that day: location/weather/<date>
+         */
+        public static Uri buildLocationsWithWeatherForDate(long date) {
+            return CONTENT_URI.buildUpon().appendPath(PATH_WEATHER)
+                    .appendPath(Long.toString(normalizeDate(date))).build();
+        }
+
+        public static long getDateFromUri(Uri uri) {
+            return Long.parseLong(uri.getPathSegments().get(2));
+        }
     }
 
     /* Inner class that defines the table contents of the weather table */
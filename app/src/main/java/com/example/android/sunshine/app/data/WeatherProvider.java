@@ -34,6 +34,7 @@ public class WeatherProvider extends ContentProvider {
     static final int WEATHER_WITH_LOCATION = 101;
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     static final int LOCATION = 300;
+    static final int LOCATION_WITH_WEATHER_FOR_DATE = 301;
 
     private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
 
@@ -93,6 +94,29 @@ public class WeatherProvider extends ContentProvider {
         );
     }
 
+    //weather.date = ?
+    private static final String sDaySelection =
+            WeatherContract.WeatherEntry.TABLE_NAME +
+                    "." + WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
+
+    /*
+        One query for every location at once, so that listing all locations costs the same
+        however many there are.
+     */
+    private Cursor getWeatherForAllLocationsByDate(
+            Uri uri, String[] projection, String sortOrder) {
+        long date = WeatherContract.LocationEntry.getDateFromUri(uri);
+
+        return sWeatherByLocationSettingQueryBuilder.query(mOpenHelper.getReadableDatabase(),
+                projection,
+                sDaySelection,
+                new String[]{Long.toString(date)},
+                null,
+                null,
+                sortOrder
+        );
+    }
+
     private Cursor getWeatherByLocationSettingAndDate(
             Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
@@ -130,6 +154,8 @@ public class WeatherProvider extends ContentProvider {
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*/#", WEATHER_WITH_LOCATION_AND_DATE);
 
         matcher.addURI(authority, WeatherContract.PATH_LOCATION, LOCATION);
+        matcher.addURI(authority, WeatherContract.PATH_LOCATION + "/" + WeatherContract.PATH_WEATHER
+                + "/#", LOCATION_WITH_WEATHER_FOR_DATE);
         return matcher;
     }
 
@@ -164,6 +190,8 @@ public class WeatherProvider extends ContentProvider {
                 return WeatherContract.WeatherEntry.CONTENT_TYPE;
             case LOCATION:
                 return WeatherContract.LocationEntry.CONTENT_TYPE;
+            case LOCATION_WITH_WEATHER_FOR_DATE:
+                return WeatherContract.WeatherEntry.CONTENT_TYPE;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -213,6 +241,11 @@ public class WeatherProvider extends ContentProvider {
                 );
                 break;
             }
+            // "location/weather/#"
+            case LOCATION_WITH_WEATHER_FOR_DATE: {
+                retCursor = getWeatherForAllLocationsByDate(uri, projection, sortOrder);
+                break;
+            }
 
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -252,6 +285,7 @@ public class WeatherProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         getContext().getContentResolver().notifyChange(uri, null);
+        ForecastRepository.onProviderChanged();
         return returnUri;
     }
 
@@ -277,6 +311,7 @@ public class WeatherProvider extends ContentProvider {
         // Because a null deletes all rows
         if (rowsDeleted != 0) {
             getContext().getContentResolver().notifyChange(uri, null);
+            ForecastRepository.onProviderChanged();
         }
         return rowsDeleted;
     }
@@ -311,6 +346,7 @@ public class WeatherProvider extends ContentProvider {
         }
         if (rowsUpdated != 0) {
             getContext().getContentResolver().notifyChange(uri, null);
+            ForecastRepository.onProviderChanged();
         }
         return rowsUpdated;
     }
@@ -336,6 +372,7 @@ public class WeatherProvider extends ContentProvider {
                     db.endTransaction();
                 }
                 getContext().getContentResolver().notifyChange(uri, null);
+                ForecastRepository.onProviderChanged();
                 return returnCount;
             default:
                 return super.bulkInsert(uri, values);
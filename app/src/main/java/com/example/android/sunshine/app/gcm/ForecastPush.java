@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app.gcm;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.example.android.sunshine.app.UpdateWatchService;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.sync.DataUpdateDispatcher;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.example.android.sunshine.app.sync.WeatherAlerts;
+import com.example.android.sunshine.app.sync.WeatherNotifier;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Applies forecast changes pushed by the server, so that fresh weather doesn't wait for the next
+ * sync and doesn't cost a request to the weather API.
+ * <p>
+ * A forecast push has {@code type} set to {@code forecast} and carries, in {@code data}, the days
+ * that changed for one location, with the same keys as the weather table:
+ * <pre>
+ * {"location": "94043",
+ *  "days": [{"date": 1419033600000, "max": 21.5, "min": 12, "humidity": 60, "pressure": 1013,
+ *            "wind": 3.5, "degrees": 270, "weather_id": 800, "short_desc": "Clear"}, ...]}
+ * </pre>
+ * The days go through the same bulk insert as a sync, which replaces the rows for those dates,
+ * and the same consumers are told.  The pushed days are checked against the alert rules.
+ */
+public class ForecastPush {
+    private static final String LOG_TAG = ForecastPush.class.getSimpleName();
+
+    static final String EXTRA_TYPE = "type";
+    static final String EXTRA_DATA = "data";
+    static final String TYPE_FORECAST = "forecast";
+
+    static final String KEY_LOCATION = "location";
+    static final String KEY_DAYS = "days";
+
+    private static final String[] LOCATION_COLUMNS = {WeatherContract.LocationEntry._ID};
+
+    /**
+     * @return whether the push is a forecast delta rather than an alert
+     */
+    static boolean isForecast(Bundle data) {
+        return TYPE_FORECAST.equals(data.getString(EXTRA_TYPE));
+    }
+
+    /**
+     * Writes the days in a forecast push and tells widgets, Muzei, the watch and the notification
+     * about it.  A push for a location we haven't synced yet can't be applied; if it's the
+     * preferred location a sync is requested instead.
+     *
+     * @return the number of days written, or -1 if the push couldn't be applied
+     */
+    static int apply(Context context, Bundle data) {
+        String extra = data.getString(EXTRA_DATA);
+        if (extra == null) {
+            Log.e(LOG_TAG, "Forecast push without " + EXTRA_DATA);
+            return -1;
+        }
+        String location;
+        ContentValues[] days;
+        try {
+            JSONObject json = new JSONObject(extra);
+            location = json.getString(KEY_LOCATION);
+            long locationId = getLocationId(context, location);
+            if (locationId == -1) {
+                Log.d(LOG_TAG, "Forecast push for unknown location " + location);
+                if (location.equals(Utility.getPreferredLocation(context))) {
+                    SunshineSyncAdapter.syncImmediately(context);
+                }
+                return -1;
+            }
+            days = parseDays(json.getJSONArray(KEY_DAYS), locationId);
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Invalid forecast push", e);
+            return -1;
+        }
+        if (days.length == 0) {
+            return 0;
+        }
+
+        int inserted = context.getContentResolver()
+                .bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, days);
+        Log.d(LOG_TAG, "Applied forecast push: " + inserted + " days for " + location);
+        WeatherAlerts.evaluate(context, location, days);
+        // The multi-city widget shows every location
+        DataUpdateDispatcher.getInstance(context).requestDispatch();
+
+        if (location.equals(Utility.getPreferredLocation(context))) {
+            context.startService(new Intent(context, UpdateWatchService.class));
+            long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+            for (ContentValues day : days) {
+                if (day.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE) == today) {
+                    WeatherNotifier.getInstance(context).notifyWeather(day);
+                }
+            }
+        }
+        return inserted;
+    }
+
+    private static long getLocationId(Context context, String location) {
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                LOCATION_COLUMNS,
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{location},
+                null);
+        if (cursor == null) {
+            return -1;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static ContentValues[] parseDays(JSONArray daysJson, long locationId)
+            throws JSONException {
+        ContentValues[] days = new ContentValues[daysJson.length()];
+        for (int i = 0; i < days.length; i++) {
+            JSONObject dayJson = daysJson.getJSONObject(i);
+            ContentValues values = new ContentValues();
+            values.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
+            // Normalized here as well as by the provider, to compare with today
+            values.put(WeatherContract.WeatherEntry.COLUMN_DATE, WeatherContract.normalizeDate(
+                    dayJson.getLong(WeatherContract.WeatherEntry.COLUMN_DATE)));
+            values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+                    dayJson.getDouble(WeatherContract.WeatherEntry.COLUMN_HUMIDITY));
+            values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+                    dayJson.getDouble(WeatherContract.WeatherEntry.COLUMN_PRESSURE));
+            values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+                    dayJson.getDouble(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED));
+            values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES,
+                    dayJson.getDouble(WeatherContract.WeatherEntry.COLUMN_DEGREES));
+            values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+                    dayJson.getDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP));
+            values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+                    dayJson.getDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP));
+            values.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+                    dayJson.getString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC));
+            values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+                    dayJson.getInt(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID));
+            days[i] = values;
+        }
+        return days;
+    }
+}
@@ -16,19 +16,12 @@
 
 package com.example.android.sunshine.app.gcm;
 
-import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.content.Context;
-import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
-import android.support.v4.app.NotificationCompat;
 import android.util.Log;
 import android.widget.Toast;
 
-import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.sync.WeatherNotifier;
 import com.google.android.gms.gcm.GcmListenerService;
 
 import org.json.JSONException;
@@ -42,8 +35,6 @@ public class MyGcmListenerService extends GcmListenerService {
     private static final String EXTRA_WEATHER = "weather";
     private static final String EXTRA_LOCATION = "location";
 
-    public static final int NOTIFICATION_ID = 1;
-
     /**
      * Called when message is received.
      *
@@ -62,49 +53,26 @@ public class MyGcmListenerService extends GcmListenerService {
             }
             // Not a bad idea to check that the message is coming from your server.
             if ((senderId).equals(from)) {
-                // Process message and then post a notification of the received message.
-                try {
-                    JSONObject jsonObject = new JSONObject(data.getString(EXTRA_DATA));
-                    String weather = jsonObject.getString(EXTRA_WEATHER);
-                    String location = jsonObject.getString(EXTRA_LOCATION);
-                    String alert =
-                            String.format(getString(R.string.gcm_weather_alert), weather, location);
-                    sendNotification(alert);
-                } catch (JSONException e) {
-                    // JSON parsing failed, so we just let this message go, since GCM is not one
-                    // of our critical features.
+                if (ForecastPush.isForecast(data)) {
+                    // Fresh forecast days: written straight to the provider, no sync needed.
+                    ForecastPush.apply(this, data);
+                } else {
+                    // Process message and then post a notification of the received message.
+                    try {
+                        JSONObject jsonObject = new JSONObject(data.getString(EXTRA_DATA));
+                        String weather = jsonObject.getString(EXTRA_WEATHER);
+                        String location = jsonObject.getString(EXTRA_LOCATION);
+                        String alert = String.format(getString(R.string.gcm_weather_alert),
+                                weather, location);
+                        // Shown with the app's other notifications, so a burst of pushes is one
+                        WeatherNotifier.getInstance(this).notifyServerAlert(alert);
+                    } catch (JSONException e) {
+                        // JSON parsing failed, so we just let this message go, since GCM is not
+                        // one of our critical features.
+                    }
                 }
             }
             Log.i(TAG, "Received: " + data.toString());
         }
     }
-
-    /**
-     *  Put the message into a notification and post it.
-     *  This is just one simple example of what you might choose to do with a GCM message.
-     *
-     * @param message The alert message to be posted.
-     */
-    private void sendNotification(String message) {
-        NotificationManager mNotificationManager =
-                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-        PendingIntent contentIntent =
-                PendingIntent.getActivity(this, 0, new Intent(this, MainActivity.class), 0);
-
-        // Notifications using both a large and a small icon (which yours should!) need the large
-        // icon as a bitmap. So we need to create that here from the resource ID, and pass the
-        // object along in our notification builder. Generally, you want to use the app icon as the
-        // small icon, so that users understand what app is triggering this notification.
-        Bitmap largeIcon = BitmapFactory.decodeResource(this.getResources(), R.drawable.art_storm);
-        NotificationCompat.Builder mBuilder =
-                new NotificationCompat.Builder(this)
-                        .setSmallIcon(R.drawable.art_clear)
-                        .setLargeIcon(largeIcon)
-                        .setContentTitle("Weather Alert!")
-                        .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
-                        .setContentText(message)
-                        .setPriority(NotificationCompat.PRIORITY_HIGH);
-        mBuilder.setContentIntent(contentIntent);
-        mNotificationManager.notify(NOTIFICATION_ID, mBuilder.build());
-    }
-}
\ No newline at end of file
+}
@@ -24,6 +24,7 @@ import android.widget.Toast;
 
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 import com.google.android.gms.gcm.GoogleCloudMessaging;
 import com.google.android.gms.iid.InstanceID;
 
@@ -53,6 +54,8 @@ public class RegistrationIntentService extends IntentService {
                     String token = instanceID.getToken(senderId,
                             GoogleCloudMessaging.INSTANCE_ID_SCOPE, null);
                     sendRegistrationToServer(token);
+                    // Forecast changes are pushed from now on, polling is only a fallback.
+                    SunshineSyncAdapter.onPushRegistrationChanged(this, true);
                 }
 
                 // You should store a boolean that indicates whether the generated token has been
@@ -66,6 +69,7 @@ public class RegistrationIntentService extends IntentService {
             // If an exception happens while fetching the new token or updating our registration data
             // on a third-party server, this ensures that we'll attempt the update at a later time.
             sharedPreferences.edit().putBoolean(MainActivity.SENT_TOKEN_TO_SERVER, false).apply();
+            SunshineSyncAdapter.onPushRegistrationChanged(this, false);
         }
     }
 
@@ -16,27 +16,26 @@
 package com.example.android.sunshine.app.muzei;
 
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.Uri;
+import android.util.DisplayMetrics;
+import android.util.Log;
 
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.Utility;
-import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.ArtProvider;
+import com.example.android.sunshine.app.data.ForecastDay;
+import com.example.android.sunshine.app.data.ForecastRepository;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
 import com.google.android.apps.muzei.api.Artwork;
 import com.google.android.apps.muzei.api.MuzeiArtSource;
 
+import java.util.List;
+
 /**
  * Muzei source that changes your background based on the current weather conditions
  */
 public class WeatherMuzeiSource extends MuzeiArtSource {
-    private static final String[] FORECAST_COLUMNS = new String[]{
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
-    };
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_SHORT_DESC = 1;
+    private static final String LOG_TAG = WeatherMuzeiSource.class.getSimpleName();
 
     public WeatherMuzeiSource() {
         super("WeatherMuzeiSource");
@@ -55,25 +54,43 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
     @Override
     protected void onUpdate(int reason) {
         String location = Utility.getPreferredLocation(this);
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                location, System.currentTimeMillis());
-        Cursor cursor = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
-                null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
-        if (cursor.moveToFirst()) {
-            int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-            String desc = cursor.getString(INDEX_SHORT_DESC);
+        List<ForecastDay> forecast = ForecastRepository.getInstance(this).getForecastBlocking();
+        if (!forecast.isEmpty()) {
+            ForecastDay today = forecast.get(0);
+            int weatherId = today.getWeatherId();
+            String desc = today.getShortDesc();
 
             String imageUrl = Utility.getImageUrlForWeatherCondition(weatherId);
             // Only publish a new wallpaper if we have a valid image
             if (imageUrl != null) {
+                // A copy the size of the screen, rather than the original for Muzei to download
+                Uri imageUri = ArtProvider.getArtUri(this, imageUrl, getWallpaperSize());
+                if (imageUri == null) {
+                    imageUri = Uri.parse(imageUrl);
+                }
+                // Everything Muzei shows; if none of it changed, Muzei has nothing to reload
+                String token = imageUri + "|" + desc + "|" + location;
+                Artwork current = getCurrentArtwork();
+                if (current != null && token.equals(current.getToken())) {
+                    Log.d(LOG_TAG, "Artwork unchanged, not publishing");
+                    return;
+                }
                 publishArtwork(new Artwork.Builder()
-                        .imageUri(Uri.parse(imageUrl))
+                        .imageUri(imageUri)
                         .title(desc)
                         .byline(location)
+                        .token(token)
                         .viewIntent(new Intent(this, MainActivity.class))
                         .build());
             }
         }
-        cursor.close();
+    }
+
+    /**
+     * @return the longer side of the screen, which the wallpaper covers in either orientation
+     */
+    private int getWallpaperSize() {
+        DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
+        return Math.max(displayMetrics.widthPixels, displayMetrics.heightPixels);
     }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A threshold on one value of a forecast day, from the alert rules preference.
+ * <p>
+ * Rules are separated by semicolons, each a field, an operator and a value:
+ * <pre>
+ * min &lt; 0; wind &gt; 50; id = 200-232
+ * </pre>
+ * Fields are {@code max}, {@code min}, {@code wind}, {@code humidity}, {@code pressure} and
+ * {@code id}, the weather condition.  Operators are {@code <}, {@code <=}, {@code >}, {@code >=}
+ * and {@code =}, which also takes an inclusive range.  Temperatures and wind speed are in the
+ * units the user chose, as they are shown.  Rules that can't be read are left out.
+ */
+class AlertRule {
+    private static final Pattern RULE_PATTERN = Pattern.compile(
+            "\\s*(max|min|wind|humidity|pressure|id)\\s*(<=|>=|<|>|=)\\s*"
+                    + "(-?\\d+(?:\\.\\d+)?)(?:\\s*-\\s*(-?\\d+(?:\\.\\d+)?))?\\s*");
+
+    static final String FIELD_MAX = "max";
+    static final String FIELD_MIN = "min";
+    static final String FIELD_WIND = "wind";
+    static final String FIELD_HUMIDITY = "humidity";
+    static final String FIELD_PRESSURE = "pressure";
+    static final String FIELD_ID = "id";
+
+    private final String mKey;
+    private final String mColumn;
+    private final boolean mTemperature;
+    private final boolean mWind;
+    private final String mOperator;
+    private final double mLow;
+    private final double mHigh;
+
+    private AlertRule(String key, String field, String operator, double low, double high) {
+        mKey = key;
+        mOperator = operator;
+        mLow = low;
+        mHigh = high;
+        mTemperature = FIELD_MAX.equals(field) || FIELD_MIN.equals(field);
+        mWind = FIELD_WIND.equals(field);
+        switch (field) {
+            case FIELD_MAX:
+                mColumn = WeatherContract.WeatherEntry.COLUMN_MAX_TEMP;
+                break;
+            case FIELD_MIN:
+                mColumn = WeatherContract.WeatherEntry.COLUMN_MIN_TEMP;
+                break;
+            case FIELD_WIND:
+                mColumn = WeatherContract.WeatherEntry.COLUMN_WIND_SPEED;
+                break;
+            case FIELD_HUMIDITY:
+                mColumn = WeatherContract.WeatherEntry.COLUMN_HUMIDITY;
+                break;
+            case FIELD_PRESSURE:
+                mColumn = WeatherContract.WeatherEntry.COLUMN_PRESSURE;
+                break;
+            default:
+                mColumn = WeatherContract.WeatherEntry.COLUMN_WEATHER_ID;
+        }
+    }
+
+    /**
+     * @return the rules in a spec, in order; empty if there are none or none can be read
+     */
+    static List<AlertRule> compile(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<AlertRule> rules = new ArrayList<>();
+        for (String ruleSpec : spec.split(";")) {
+            Matcher matcher = RULE_PATTERN.matcher(ruleSpec);
+            if (!matcher.matches()) {
+                continue;
+            }
+            String field = matcher.group(1);
+            String operator = matcher.group(2);
+            double low = Double.parseDouble(matcher.group(3));
+            double high = low;
+            if (matcher.group(4) != null) {
+                if (!"=".equals(operator)) {
+                    continue;
+                }
+                high = Double.parseDouble(matcher.group(4));
+            }
+            String key = field + operator + matcher.group(3)
+                    + (matcher.group(4) != null ? "-" + matcher.group(4) : "");
+            rules.add(new AlertRule(key, field, operator, low, high));
+        }
+        return rules;
+    }
+
+    /**
+     * @return the rule without whitespace, the same for rules that mean the same
+     */
+    String getKey() {
+        return mKey;
+    }
+
+    /**
+     * @param day  a row of the weather table, with its values as stored
+     * @param metric whether the user shows metric units, which the thresholds are in
+     */
+    boolean matches(ContentValues day, boolean metric) {
+        Double stored = day.getAsDouble(mColumn);
+        if (stored == null) {
+            return false;
+        }
+        double value = stored;
+        if (!metric && mTemperature) {
+            value = value * 1.8 + 32;
+        } else if (!metric && mWind) {
+            value = value * .621371192237334;
+        }
+        switch (mOperator) {
+            case "<":
+                return value < mLow;
+            case "<=":
+                return value <= mLow;
+            case ">":
+                return value > mLow;
+            case ">=":
+                return value >= mLow;
+            default:
+                return value >= mLow && value <= mHigh;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tells the widgets and Muzei that the weather changed, once per burst of changes.
+ * <p>
+ * Syncs for several locations, retries and manual refreshes can land within seconds of each
+ * other, and each consumer requeries and re-renders when told.  Requests are held until none
+ * has come for the quiet period in {@code R.integer.data_update_quiet_period_ms}, then each
+ * consumer gets a single {@link SunshineSyncAdapter#ACTION_DATA_UPDATED}.
+ * <p>
+ * The wait is an alarm rather than a message on a looper, so the dispatch still happens when
+ * the process is gone by then, as it often is right after a sync.  Each request replaces the
+ * alarm; {@link DataUpdateReceiver} dispatches when it goes off.
+ */
+public class DataUpdateDispatcher {
+    private static final String LOG_TAG = DataUpdateDispatcher.class.getSimpleName();
+
+    private static DataUpdateDispatcher sInstance;
+
+    private final Context mContext;
+    private final AlarmManager mAlarmManager;
+    private final PendingIntent mDispatchIntent;
+    private final long mQuietPeriodMs;
+
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final AtomicInteger mDispatchCount = new AtomicInteger();
+
+    public static synchronized DataUpdateDispatcher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new DataUpdateDispatcher(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private DataUpdateDispatcher(Context context) {
+        mContext = context;
+        mQuietPeriodMs = context.getResources().getInteger(R.integer.data_update_quiet_period_ms);
+        mAlarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        mDispatchIntent = PendingIntent.getBroadcast(context, 0,
+                new Intent(context, DataUpdateReceiver.class), PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    /**
+     * Tells the consumers once no other request has come for the quiet period.  Any thread.
+     */
+    public void requestDispatch() {
+        mRequestCount.incrementAndGet();
+        // Setting the same PendingIntent again replaces the pending alarm
+        long triggerAt = SystemClock.elapsedRealtime() + mQuietPeriodMs;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            setExact(triggerAt);
+        } else {
+            mAlarmManager.set(AlarmManager.ELAPSED_REALTIME, triggerAt, mDispatchIntent);
+        }
+    }
+
+    // From KitKat on set() may be deferred well past the quiet period to batch it with others
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private void setExact(long triggerAt) {
+        mAlarmManager.setExact(AlarmManager.ELAPSED_REALTIME, triggerAt, mDispatchIntent);
+    }
+
+    /**
+     * @return how many times consumers were asked to update
+     */
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * @return how many times consumers were actually told
+     */
+    public int getDispatchCount() {
+        return mDispatchCount.get();
+    }
+
+    void dispatch() {
+        Log.d(LOG_TAG, "Dispatching data update: " + mDispatchCount.incrementAndGet()
+                + " dispatches for " + mRequestCount.get() + " requests");
+        updateWidgets();
+        updateMuzei();
+    }
+
+    private void updateWidgets() {
+        // Setting the package ensures that only components in our app will receive the broadcast
+        Intent dataUpdatedIntent = new Intent(SunshineSyncAdapter.ACTION_DATA_UPDATED)
+                .setPackage(mContext.getPackageName());
+        mContext.sendBroadcast(dataUpdatedIntent);
+    }
+
+    private void updateMuzei() {
+        // Muzei is only compatible with Jelly Bean MR1+ devices, so there's no need to update the
+        // Muzei background on lower API level devices
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            mContext.startService(new Intent(SunshineSyncAdapter.ACTION_DATA_UPDATED)
+                    .setClass(mContext, WeatherMuzeiSource.class));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Notification large icons, at the size the system shows them, for the last few conditions.
+ * Keyed by art url, which covers both the weather id and the art pack.  Blocks on a download
+ * when the icon isn't cached, so use from a worker thread.
+ */
+class LargeIconCache {
+    private static final String LOG_TAG = LargeIconCache.class.getSimpleName();
+
+    // Conditions seen in a few days of notifications
+    private static final int MAX_ICONS = 8;
+
+    private final Context mContext;
+    private final int mWidth;
+    private final int mHeight;
+    private final LruCache<String, Bitmap> mIcons = new LruCache<>(MAX_ICONS);
+
+    LargeIconCache(Context context) {
+        mContext = context;
+        Resources resources = context.getResources();
+        // On Honeycomb and higher devices, we can retrieve the size of the large icon
+        // Prior to that, we use a fixed size
+        @SuppressLint("InlinedApi")
+        int width = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width)
+                : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+        @SuppressLint("InlinedApi")
+        int height = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                ? resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)
+                : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+        mWidth = width;
+        mHeight = height;
+    }
+
+    Bitmap get(int weatherId) {
+        String artUrl = Utility.getArtUrlForWeatherCondition(mContext, weatherId);
+        Bitmap icon = mIcons.get(artUrl);
+        if (icon == null) {
+            icon = load(weatherId, artUrl);
+            mIcons.put(artUrl, icon);
+        }
+        return icon;
+    }
+
+    private Bitmap load(int weatherId, String artUrl) {
+        int artResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
+        if (!Utility.usingLocalGraphics(mContext)) {
+            try {
+                return Glide.with(mContext)
+                        .load(artUrl)
+                        .asBitmap()
+                        .error(artResourceId)
+                        .fitCenter()
+                        .into(mWidth, mHeight).get();
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(LOG_TAG, "Error retrieving large icon from " + artUrl, e);
+            }
+        }
+        Bitmap decoded = BitmapFactory.decodeResource(mContext.getResources(), artResourceId);
+        Bitmap icon = Bitmap.createScaledBitmap(decoded, mWidth, mHeight, true);
+        if (icon != decoded) {
+            decoded.recycle();
+        }
+        return icon;
+    }
+}
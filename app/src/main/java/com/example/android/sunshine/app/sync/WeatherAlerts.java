@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks the user's {@link AlertRule}s against forecast days as they are written, by a sync or
+ * a forecast push, and has {@link WeatherNotifier} tell the user about the ones that match.
+ * <p>
+ * Only days that changed are looked at: a sync rewrites the whole forecast, so it passes what
+ * {@link #changedDays(Context, String, ContentValues[])} leaves of it, and a push only carries
+ * changed days.  The cost follows the size of the change.  A rule fires once per location and
+ * date: the days it fired for are kept in preferences of their own until the date has passed.
+ * Changed rules apply from the next update on.
+ */
+public class WeatherAlerts {
+    private static final String LOG_TAG = WeatherAlerts.class.getSimpleName();
+
+    static final String PREFS_NAME = "weather_alerts";
+    private static final char KEY_SEPARATOR = '|';
+
+    // The columns rules can look at, to tell whether a day changed
+    private static final String[] DAY_COLUMNS = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID
+    };
+    // these indices must match the projection
+    private static final int INDEX_DATE = 0;
+
+    /**
+     * Leaves out the days the stored forecast already has as they are, as far as rules can tell.
+     * Call before the days are written.  Blocks on the provider, don't call on the main thread.
+     *
+     * @param days rows of the weather table, with the {@link WeatherContract.WeatherEntry} columns
+     * @return the days that are new or differ from the stored ones
+     */
+    public static ContentValues[] changedDays(Context context, String locationSetting,
+                                              ContentValues[] days) {
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        Cursor cursor = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                        locationSetting, today),
+                DAY_COLUMNS, null, null, null);
+        if (cursor == null) {
+            return days;
+        }
+        Map<Long, ContentValues> stored = new HashMap<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                ContentValues day = new ContentValues(DAY_COLUMNS.length);
+                for (int i = INDEX_DATE + 1; i < DAY_COLUMNS.length; i++) {
+                    day.put(DAY_COLUMNS[i], cursor.getDouble(i));
+                }
+                stored.put(cursor.getLong(INDEX_DATE), day);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        List<ContentValues> changed = new ArrayList<>(days.length);
+        for (ContentValues day : days) {
+            ContentValues old = stored.get(WeatherContract.normalizeDate(
+                    day.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE)));
+            if (old == null || !sameForRules(old, day)) {
+                changed.add(day);
+            }
+        }
+        return changed.toArray(new ContentValues[changed.size()]);
+    }
+
+    private static boolean sameForRules(ContentValues stored, ContentValues day) {
+        for (int i = INDEX_DATE + 1; i < DAY_COLUMNS.length; i++) {
+            Double value = day.getAsDouble(DAY_COLUMNS[i]);
+            if (value == null || !value.equals(stored.getAsDouble(DAY_COLUMNS[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates the alert rules over days about to be, or just, written for a location.  Blocks
+     * on preferences, don't call on the main thread.
+     *
+     * @param days rows of the weather table, with the {@link WeatherContract.WeatherEntry} columns
+     * @return the number of alerts fired
+     */
+    public static synchronized int evaluate(Context context, String locationSetting,
+                                            ContentValues[] days) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        List<AlertRule> rules = AlertRule.compile(prefs.getString(
+                context.getString(R.string.pref_alert_rules_key),
+                context.getString(R.string.pref_alert_rules_default)));
+        if (rules.isEmpty() || days.length == 0) {
+            return 0;
+        }
+        boolean metric = Utility.isMetric(context);
+
+        SharedPreferences fired = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = fired.edit();
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        pruneFired(fired, editor, today);
+
+        int count = 0;
+        for (ContentValues day : days) {
+            long date = day.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+            if (date < today) {
+                continue;
+            }
+            for (AlertRule rule : rules) {
+                if (!rule.matches(day, metric)) {
+                    continue;
+                }
+                String key = getFiredKey(rule, locationSetting, date);
+                if (fired.contains(key)) {
+                    continue;
+                }
+                editor.putLong(key, date);
+                WeatherNotifier.getInstance(context).notifyAlert(locationSetting, rule.getKey(),
+                        day);
+                count++;
+            }
+        }
+        editor.apply();
+        if (count > 0) {
+            Log.d(LOG_TAG, count + " alerts for " + locationSetting);
+        }
+        return count;
+    }
+
+    static String getFiredKey(AlertRule rule, String locationSetting, long date) {
+        return rule.getKey() + KEY_SEPARATOR + locationSetting + KEY_SEPARATOR + date;
+    }
+
+    private static void pruneFired(SharedPreferences fired, SharedPreferences.Editor editor,
+                                   long today) {
+        for (Map.Entry<String, ?> entry : fired.getAll().entrySet()) {
+            Object date = entry.getValue();
+            if (!(date instanceof Long) || (Long) date < today) {
+                editor.remove(entry.getKey());
+            }
+        }
+    }
+}
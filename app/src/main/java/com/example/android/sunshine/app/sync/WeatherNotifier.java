@@ -0,0 +1,483 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.TaskStackBuilder;
+import android.util.Log;
+
+import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Posts every notification the app shows: the daily weather, the alerts fired by
+ * {@link WeatherAlerts} and the alerts pushed by the server.
+ * <p>
+ * Callers hand over what they have and return straight away: notifications are built on a
+ * worker thread of its own, so a sync never waits on the large icon, which comes from a
+ * {@link LargeIconCache} and is only downloaded the first time a condition is shown.
+ * <p>
+ * Each kind of notification is a channel with a minimum interval between posts.  Alerts that
+ * arrive within the interval are batched into the next post, alerts are grouped into one
+ * notification per location, and a notification whose content is the same as what was posted
+ * in the last hour isn't posted again.  A burst of syncs or pushes is one update of the shade.
+ * <p>
+ * Batching must not cost delivery: {@link WeatherNotifierService} is kept started while anything
+ * is waiting to be posted, so the process outlives the sync or push that handed it over.
+ */
+public class WeatherNotifier {
+    private static final String LOG_TAG = WeatherNotifier.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private static final int CHANNEL_FORECAST = 0;
+    private static final int CHANNEL_ALERTS = 1;
+    private static final int CHANNEL_SERVER_ALERTS = 2;
+    // The daily weather is limited to one a day by preference, across restarts
+    private static final long[] CHANNEL_MIN_INTERVAL_MS = {0, 60 * 1000, 60 * 1000};
+    // Long enough for everything one sync or push fires to make it into the same post
+    private static final long BATCH_DELAY_MS = 1000;
+    private static final long DEDUPE_WINDOW_MS = 60 * 60 * 1000;
+
+    private static final int WEATHER_NOTIFICATION_ID = 3004;
+    // Alerts are tagged, one notification per location
+    private static final String ALERT_NOTIFICATION_TAG = "alert";
+    private static final int SERVER_ALERT_NOTIFICATION_ID = 1;
+
+    private static final String[] LOCATION_COLUMNS = {
+            WeatherContract.LocationEntry.COLUMN_CITY_NAME
+    };
+
+    private static WeatherNotifier sInstance;
+
+    private final Context mContext;
+    private final Handler mHandler;
+
+    // Only used on the worker thread
+    private final LargeIconCache mLargeIcons;
+    private Bitmap mServerAlertIcon;
+    // Alerts for today on, by location, then by rule and date
+    private final Map<String, Map<String, Alert>> mAlerts = new HashMap<>();
+    private final Set<String> mPendingAlertLocations = new LinkedHashSet<>();
+    private final Set<String> mPendingServerAlerts = new LinkedHashSet<>();
+    private final long[] mNextPostTimes = new long[CHANNEL_MIN_INTERVAL_MS.length];
+    // What was last posted, and when, by tag and id
+    private final Map<String, Integer> mPostedHashes = new HashMap<>();
+    private final Map<String, Long> mPostedTimes = new HashMap<>();
+    // Stopped once nothing is waiting; older start ids don't need stopping, the latest does it
+    private Service mIdleService;
+    private int mIdleStartId;
+
+    private volatile int mPostedCount;
+    private volatile int mDedupedCount;
+
+    private static class Alert {
+        final long date;
+        final int weatherId;
+        final String text;
+
+        Alert(long date, int weatherId, String text) {
+            this.date = date;
+            this.weatherId = weatherId;
+            this.text = text;
+        }
+    }
+
+    public static synchronized WeatherNotifier getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WeatherNotifier(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WeatherNotifier(Context context) {
+        mContext = context;
+        mLargeIcons = new LargeIconCache(context);
+        HandlerThread workerThread = new HandlerThread(WeatherNotifier.class.getSimpleName());
+        workerThread.start();
+        mHandler = new Handler(workerThread.getLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                if (msg.what == CHANNEL_ALERTS) {
+                    showAlerts();
+                } else if (msg.what == CHANNEL_SERVER_ALERTS) {
+                    showServerAlerts();
+                }
+                stopIfIdle();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Stops a service once everything handed over until now, and meanwhile, is posted.  Any
+     * thread.
+     */
+    void stopWhenIdle(final Service service, final int startId) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mIdleService = service;
+                mIdleStartId = startId;
+                stopIfIdle();
+            }
+        });
+    }
+
+    private void stopIfIdle() {
+        if (mIdleService == null || mHandler.hasMessages(CHANNEL_ALERTS)
+                || mHandler.hasMessages(CHANNEL_SERVER_ALERTS)) {
+            return;
+        }
+        // A no-op if the service was started again since; that start stops it in turn
+        mIdleService.stopSelf(mIdleStartId);
+        mIdleService = null;
+    }
+
+    // Keeps the process until the work just posted to the worker thread is done
+    private void keepAlive() {
+        mContext.startService(new Intent(mContext, WeatherNotifierService.class));
+    }
+
+    /**
+     * @return how many notifications were posted
+     */
+    public int getPostedCount() {
+        return mPostedCount;
+    }
+
+    /**
+     * @return how many notifications weren't posted because they showed the same as the last one
+     */
+    public int getDedupedCount() {
+        return mDedupedCount;
+    }
+
+    /**
+     * Notifies the user of today's weather, if notifications are on and the last one is more
+     * than a day old.  Any thread.
+     *
+     * @param today the weather for today, with the {@link WeatherContract.WeatherEntry} columns
+     */
+    public void notifyWeather(ContentValues today) {
+        final ContentValues values = new ContentValues(today);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                showNotification(values);
+            }
+        });
+        keepAlive();
+    }
+
+    /**
+     * Alerts the user that a day matched one of their rules, if notifications are on.  The
+     * alerts for a location are shown together.  Any thread.
+     *
+     * @param rule the rule that matched, as shown to the user
+     * @param day  the weather for that day, with the {@link WeatherContract.WeatherEntry} columns
+     */
+    void notifyAlert(final String locationSetting, final String rule, ContentValues day) {
+        final ContentValues values = new ContentValues(day);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                addAlert(locationSetting, rule, values);
+                mPendingAlertLocations.add(locationSetting);
+                scheduleChannel(CHANNEL_ALERTS);
+            }
+        });
+        keepAlive();
+    }
+
+    /**
+     * Shows an alert pushed by the server.  Alerts pushed together are shown together.  Any
+     * thread.
+     *
+     * @param message the alert, as shown to the user
+     */
+    public void notifyServerAlert(final String message) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mPendingServerAlerts.add(message);
+                scheduleChannel(CHANNEL_SERVER_ALERTS);
+            }
+        });
+        keepAlive();
+    }
+
+    private void scheduleChannel(int channel) {
+        if (mHandler.hasMessages(channel)) {
+            return;
+        }
+        long postTime = Math.max(SystemClock.uptimeMillis() + BATCH_DELAY_MS,
+                mNextPostTimes[channel]);
+        mHandler.sendEmptyMessageAtTime(channel, postTime);
+    }
+
+    private boolean areNotificationsEnabled(SharedPreferences prefs) {
+        return prefs.getBoolean(mContext.getString(R.string.pref_enable_notifications_key),
+                Boolean.parseBoolean(
+                        mContext.getString(R.string.pref_enable_notifications_default)));
+    }
+
+    private PendingIntent getContentIntent() {
+        // Make something interesting happen when the user clicks on the notification.
+        // In this case, opening the app is sufficient.
+        Intent resultIntent = new Intent(mContext, MainActivity.class);
+
+        // The stack builder object will contain an artificial back stack for the
+        // started Activity.
+        // This ensures that navigating backward from the Activity leads out of
+        // your application to the Home screen.
+        TaskStackBuilder stackBuilder = TaskStackBuilder.create(mContext);
+        stackBuilder.addNextIntent(resultIntent);
+        return stackBuilder.getPendingIntent(
+                0,
+                PendingIntent.FLAG_UPDATE_CURRENT
+        );
+    }
+
+    /*
+        Posts a notification unless the same content was posted under the same tag and id within
+        the dedupe window, and starts the channel's interval.
+     */
+    private void post(int channel, String tag, int id, int contentHash,
+                         NotificationCompat.Builder builder) {
+        String key = tag + id;
+        long now = SystemClock.elapsedRealtime();
+        Integer postedHash = mPostedHashes.get(key);
+        if (postedHash != null && postedHash == contentHash
+                && now - mPostedTimes.get(key) < DEDUPE_WINDOW_MS) {
+            mDedupedCount++;
+            Log.d(LOG_TAG, "Not posting " + key + ", it hasn't changed");
+            return;
+        }
+        NotificationManager notificationManager =
+                (NotificationManager) mContext.getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.notify(tag, id, builder.build());
+        mPostedHashes.put(key, contentHash);
+        mPostedTimes.put(key, now);
+        mNextPostTimes[channel] = SystemClock.uptimeMillis() + CHANNEL_MIN_INTERVAL_MS[channel];
+        mPostedCount++;
+    }
+
+    private void addAlert(String locationSetting, String rule, ContentValues day) {
+        long date = day.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+        String text = String.format(mContext.getString(R.string.format_alert_notification),
+                Utility.getFriendlyDayString(mContext, date, false),
+                day.getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC),
+                Utility.formatTemperature(mContext,
+                        day.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP)),
+                Utility.formatTemperature(mContext,
+                        day.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP)),
+                rule);
+        Map<String, Alert> alerts = mAlerts.get(locationSetting);
+        if (alerts == null) {
+            alerts = new LinkedHashMap<>();
+            mAlerts.put(locationSetting, alerts);
+        }
+        // A newer alert for the same rule and day replaces the old one, and goes last
+        String key = rule + '|' + date;
+        alerts.remove(key);
+        alerts.put(key, new Alert(date,
+                day.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID), text));
+    }
+
+    private void showAlerts() {
+        List<String> locations = new ArrayList<>(mPendingAlertLocations);
+        mPendingAlertLocations.clear();
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        if (!areNotificationsEnabled(prefs)) {
+            return;
+        }
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        for (String locationSetting : locations) {
+            Map<String, Alert> alerts = mAlerts.get(locationSetting);
+            List<String> lines = new ArrayList<>(alerts.size());
+            Alert latest = null;
+            for (Iterator<Alert> it = alerts.values().iterator(); it.hasNext(); ) {
+                Alert alert = it.next();
+                if (alert.date < today) {
+                    it.remove();
+                    continue;
+                }
+                lines.add(alert.text);
+                latest = alert;
+            }
+            if (latest == null) {
+                continue;
+            }
+            String title = mContext.getString(R.string.title_alert_notification,
+                    getCityName(locationSetting));
+            NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+            for (String line : lines) {
+                style.addLine(line);
+            }
+            NotificationCompat.Builder builder =
+                    new NotificationCompat.Builder(mContext)
+                            .setColor(mContext.getResources().getColor(R.color.primary_light))
+                            .setSmallIcon(Utility.getIconResourceForWeatherCondition(
+                                    latest.weatherId))
+                            .setLargeIcon(mLargeIcons.get(latest.weatherId))
+                            .setContentTitle(title)
+                            .setContentText(latest.text)
+                            .setStyle(style)
+                            .setNumber(lines.size())
+                            .setAutoCancel(true)
+                            .setContentIntent(getContentIntent());
+            post(CHANNEL_ALERTS, ALERT_NOTIFICATION_TAG, locationSetting.hashCode(),
+                    lines.hashCode(), builder);
+        }
+    }
+
+    private String getCityName(String locationSetting) {
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                LOCATION_COLUMNS,
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{locationSetting},
+                null);
+        if (cursor == null) {
+            return locationSetting;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : locationSetting;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void showServerAlerts() {
+        List<String> messages = new ArrayList<>(mPendingServerAlerts);
+        mPendingServerAlerts.clear();
+        if (messages.isEmpty()) {
+            return;
+        }
+        String message = messages.get(messages.size() - 1);
+        NotificationCompat.Style style;
+        if (messages.size() == 1) {
+            style = new NotificationCompat.BigTextStyle().bigText(message);
+        } else {
+            NotificationCompat.InboxStyle inboxStyle = new NotificationCompat.InboxStyle();
+            for (String line : messages) {
+                inboxStyle.addLine(line);
+            }
+            style = inboxStyle;
+        }
+
+        // Notifications using both a large and a small icon (which yours should!) need the large
+        // icon as a bitmap. So we need to create that here from the resource ID, and pass the
+        // object along in our notification builder. Generally, you want to use the app icon as the
+        // small icon, so that users understand what app is triggering this notification.
+        if (mServerAlertIcon == null) {
+            mServerAlertIcon =
+                    BitmapFactory.decodeResource(mContext.getResources(), R.drawable.art_storm);
+        }
+        PendingIntent contentIntent = PendingIntent.getActivity(mContext, 0,
+                new Intent(mContext, MainActivity.class), 0);
+        NotificationCompat.Builder builder =
+                new NotificationCompat.Builder(mContext)
+                        .setSmallIcon(R.drawable.art_clear)
+                        .setLargeIcon(mServerAlertIcon)
+                        .setContentTitle(
+                                mContext.getString(R.string.title_server_alert_notification))
+                        .setStyle(style)
+                        .setContentText(message)
+                        .setPriority(NotificationCompat.PRIORITY_HIGH)
+                        .setContentIntent(contentIntent);
+        post(CHANNEL_SERVER_ALERTS, null, SERVER_ALERT_NOTIFICATION_ID, messages.hashCode(),
+                builder);
+    }
+
+    private void showNotification(ContentValues today) {
+        Context context = mContext;
+        //checking the last update and notify if it' the first of the day
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        if (!areNotificationsEnabled(prefs)) {
+            return;
+        }
+
+        String lastNotificationKey = context.getString(R.string.pref_last_notification);
+        long lastSync = prefs.getLong(lastNotificationKey, 0);
+        if (System.currentTimeMillis() - lastSync < DAY_IN_MILLIS) {
+            return;
+        }
+
+        // Last sync was more than 1 day ago, let's send a notification with the weather.
+        int weatherId = today.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID);
+        double high = today.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP);
+        double low = today.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP);
+        String desc = today.getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC);
+
+        int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
+        String title = context.getString(R.string.app_name);
+
+        // Define the text of the forecast.
+        String contentText = String.format(context.getString(R.string.format_notification),
+                desc,
+                Utility.formatTemperature(context, high),
+                Utility.formatTemperature(context, low));
+
+        // NotificationCompatBuilder is a very convenient way to build backward-compatible
+        // notifications.  Just throw in some data.
+        NotificationCompat.Builder builder =
+                new NotificationCompat.Builder(context)
+                        .setColor(context.getResources().getColor(R.color.primary_light))
+                        .setSmallIcon(iconId)
+                        .setLargeIcon(mLargeIcons.get(weatherId))
+                        .setContentTitle(title)
+                        .setContentText(contentText)
+                        .setContentIntent(getContentIntent());
+
+        // WEATHER_NOTIFICATION_ID allows you to update the notification later on.
+        post(CHANNEL_FORECAST, null, WEATHER_NOTIFICATION_ID,
+                Arrays.hashCode(new Object[] {iconId, contentText}), builder);
+
+        //refreshing last sync
+        prefs.edit()
+                .putLong(lastNotificationKey, System.currentTimeMillis())
+                .apply();
+    }
+}
@@ -11,6 +11,7 @@ import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.v4.app.TaskStackBuilder;
 import android.widget.RemoteViews;
+import android.widget.RemoteViewsService;
 
 import com.example.android.sunshine.app.DetailActivity;
 import com.example.android.sunshine.app.MainActivity;
@@ -65,6 +66,13 @@ public class DetailWidgetProvider extends AppWidgetProvider {
         }
     }
 
+    /**
+     * @return the service whose factory fills in the list items
+     */
+    protected Class<? extends RemoteViewsService> getRemoteViewsServiceClass() {
+        return DetailWidgetRemoteViewsService.class;
+    }
+
     /**
      * Sets the remote adapter used to fill in the list items
      *
@@ -73,7 +81,7 @@ public class DetailWidgetProvider extends AppWidgetProvider {
     @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
     private void setRemoteAdapter(Context context, @NonNull final RemoteViews views) {
         views.setRemoteAdapter(R.id.widget_list,
-                new Intent(context, DetailWidgetRemoteViewsService.class));
+                new Intent(context, getRemoteViewsServiceClass()));
     }
 
     /**
@@ -84,6 +92,6 @@ public class DetailWidgetProvider extends AppWidgetProvider {
     @SuppressWarnings("deprecation")
     private void setRemoteAdapterV11(Context context, @NonNull final RemoteViews views) {
         views.setRemoteAdapter(0, R.id.widget_list,
-                new Intent(context, DetailWidgetRemoteViewsService.class));
+                new Intent(context, getRemoteViewsServiceClass()));
     }
 }
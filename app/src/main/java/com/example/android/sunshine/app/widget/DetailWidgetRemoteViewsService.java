@@ -3,23 +3,20 @@ package com.example.android.sunshine.app.widget;
 import android.annotation.TargetApi;
 import android.content.Intent;
 import android.database.Cursor;
-import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.Build;
-import android.util.Log;
+import android.util.SparseArray;
 import android.widget.AdapterView;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.target.Target;
+import com.example.android.sunshine.app.ArtLoader;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.ArtProvider;
 import com.example.android.sunshine.app.data.WeatherContract;
 
-import java.util.concurrent.ExecutionException;
-
 /**
  * RemoteViewsService controlling the data being shown in the scrollable weather detail widget
  */
@@ -46,6 +43,10 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
     public RemoteViewsFactory onGetViewFactory(Intent intent) {
         return new RemoteViewsFactory() {
             private Cursor data = null;
+            private String locationSetting;
+            // Local copies of the art for the weather ids in data, at the size of the widget
+            // icon.  Ids missing here are shown with the local icon.
+            private SparseArray<Uri> art = new SparseArray<>();
 
             @Override
             public void onCreate() {
@@ -71,6 +72,37 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                         null,
                         WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
                 Binder.restoreCallingIdentity(identityToken);
+                locationSetting = location;
+                prepareArt();
+            }
+
+            /*
+                Makes sure there is a local copy of the art for every row now, on the binder thread
+                the launcher is already waiting on, so that getViewAt doesn't block on a download.
+                Rows only carry the copy's Uri: the launcher decodes each copy once however many
+                rows show it, and no pixels go through the binder.
+             */
+            private void prepareArt() {
+                art = new SparseArray<>();
+                if (data == null
+                        || Utility.usingLocalGraphics(DetailWidgetRemoteViewsService.this)) {
+                    return;
+                }
+                int iconSize = ArtLoader.getInstance(DetailWidgetRemoteViewsService.this)
+                        .getListIconSize();
+                for (int i = 0; data.moveToPosition(i); i++) {
+                    int weatherId = data.getInt(INDEX_WEATHER_CONDITION_ID);
+                    if (art.indexOfKey(weatherId) >= 0) {
+                        continue;
+                    }
+                    Uri artUri = ArtProvider.getIconUri(DetailWidgetRemoteViewsService.this,
+                            Utility.getArtUrlForWeatherCondition(
+                                    DetailWidgetRemoteViewsService.this, weatherId),
+                            iconSize);
+                    if (artUri != null) {
+                        art.put(weatherId, artUri);
+                    }
+                }
             }
 
             @Override
@@ -79,6 +111,7 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                     data.close();
                     data = null;
                 }
+                art.clear();
             }
 
             @Override
@@ -96,20 +129,7 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                         R.layout.widget_detail_list_item);
                 int weatherId = data.getInt(INDEX_WEATHER_CONDITION_ID);
                 int weatherArtResourceId = Utility.getIconResourceForWeatherCondition(weatherId);
-                Bitmap weatherArtImage = null;
-                if ( !Utility.usingLocalGraphics(DetailWidgetRemoteViewsService.this) ) {
-                    String weatherArtResourceUrl = Utility.getArtUrlForWeatherCondition(
-                            DetailWidgetRemoteViewsService.this, weatherId);
-                    try {
-                        weatherArtImage = Glide.with(DetailWidgetRemoteViewsService.this)
-                                .load(weatherArtResourceUrl)
-                                .asBitmap()
-                                .error(weatherArtResourceId)
-                                .into(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL).get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.e(LOG_TAG, "Error retrieving large icon from " + weatherArtResourceUrl, e);
-                    }
-                }
+                Uri weatherArtUri = art.get(weatherId);
                 String description = data.getString(INDEX_WEATHER_DESC);
                 long dateInMillis = data.getLong(INDEX_WEATHER_DATE);
                 String formattedDate = Utility.getFriendlyDayString(
@@ -120,8 +140,8 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                         Utility.formatTemperature(DetailWidgetRemoteViewsService.this, maxTemp);
                 String formattedMinTemperature =
                         Utility.formatTemperature(DetailWidgetRemoteViewsService.this, minTemp);
-                if (weatherArtImage != null) {
-                    views.setImageViewBitmap(R.id.widget_icon, weatherArtImage);
+                if (weatherArtUri != null) {
+                    views.setImageViewUri(R.id.widget_icon, weatherArtUri);
                 } else {
                     views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
                 }
@@ -134,8 +154,6 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                 views.setTextViewText(R.id.widget_low_temperature, formattedMinTemperature);
 
                 final Intent fillInIntent = new Intent();
-                String locationSetting =
-                        Utility.getPreferredLocation(DetailWidgetRemoteViewsService.this);
                 Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
                         locationSetting,
                         dateInMillis);
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.widget.RemoteViewsService;
+
+/**
+ * Provider for a scrollable widget with today's weather in every location we have weather for.
+ * It looks like the detail widget, with a row per location instead of per day.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+public class MultiCityWidgetProvider extends DetailWidgetProvider {
+    @Override
+    protected Class<? extends RemoteViewsService> getRemoteViewsServiceClass() {
+        return MultiCityWidgetRemoteViewsService.class;
+    }
+}
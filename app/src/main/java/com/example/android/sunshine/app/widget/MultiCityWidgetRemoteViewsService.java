@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.annotation.TargetApi;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Binder;
+import android.os.Build;
+import android.util.SparseArray;
+import android.widget.AdapterView;
+import android.widget.RemoteViews;
+import android.widget.RemoteViewsService;
+
+import com.example.android.sunshine.app.ArtLoader;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.ArtProvider;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+/**
+ * RemoteViewsService controlling the data being shown in the multi-city widget: today's weather
+ * for every location, from one query of the provider however many locations there are.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+public class MultiCityWidgetRemoteViewsService extends RemoteViewsService {
+    private static final String[] CITY_COLUMNS = {
+            WeatherContract.LocationEntry.TABLE_NAME + "." + WeatherContract.LocationEntry._ID,
+            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+            WeatherContract.LocationEntry.COLUMN_CITY_NAME,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+    };
+    // these indices must match the projection
+    static final int INDEX_LOCATION_ID = 0;
+    static final int INDEX_LOCATION_SETTING = 1;
+    static final int INDEX_CITY_NAME = 2;
+    static final int INDEX_WEATHER_CONDITION_ID = 3;
+    static final int INDEX_WEATHER_DESC = 4;
+    static final int INDEX_WEATHER_MAX_TEMP = 5;
+    static final int INDEX_WEATHER_MIN_TEMP = 6;
+
+    // Rows are built a page at a time, about what a widget shows at once
+    private static final int PAGE_SIZE = 8;
+
+    @Override
+    public RemoteViewsFactory onGetViewFactory(Intent intent) {
+        return new RemoteViewsFactory() {
+            private Cursor data = null;
+            private long date;
+            // Rows built so far for this data set, by position
+            private RemoteViews[] rows = new RemoteViews[0];
+            // Local copies of the art, by weather id, for the rows built so far
+            private SparseArray<Uri> art = new SparseArray<>();
+
+            @Override
+            public void onCreate() {
+                // Nothing to do
+            }
+
+            @Override
+            public void onDataSetChanged() {
+                if (data != null) {
+                    data.close();
+                }
+                // This method is called by the app hosting the widget (e.g., the launcher)
+                // However, our ContentProvider is not exported so it doesn't have access to the
+                // data. Therefore we need to clear (and finally restore) the calling identity so
+                // that calls use our process and permission
+                final long identityToken = Binder.clearCallingIdentity();
+                date = WeatherContract.normalizeDate(System.currentTimeMillis());
+                data = getContentResolver().query(
+                        WeatherContract.LocationEntry.buildLocationsWithWeatherForDate(date),
+                        CITY_COLUMNS,
+                        null,
+                        null,
+                        WeatherContract.LocationEntry.COLUMN_CITY_NAME + " ASC");
+                Binder.restoreCallingIdentity(identityToken);
+                rows = new RemoteViews[data == null ? 0 : data.getCount()];
+                art = new SparseArray<>();
+            }
+
+            @Override
+            public void onDestroy() {
+                if (data != null) {
+                    data.close();
+                    data = null;
+                }
+                rows = new RemoteViews[0];
+                art.clear();
+            }
+
+            @Override
+            public int getCount() {
+                return rows.length;
+            }
+
+            @Override
+            public RemoteViews getViewAt(int position) {
+                if (position == AdapterView.INVALID_POSITION || position >= rows.length) {
+                    return null;
+                }
+                if (rows[position] == null) {
+                    buildPage(position / PAGE_SIZE);
+                }
+                return rows[position];
+            }
+
+            /*
+                Builds the rows of a page in one pass over the cursor, so scrolling back over
+                rows already shown costs nothing until the data set changes.
+             */
+            private void buildPage(int page) {
+                int end = Math.min(rows.length, (page + 1) * PAGE_SIZE);
+                for (int position = page * PAGE_SIZE; position < end; position++) {
+                    if (rows[position] == null && data.moveToPosition(position)) {
+                        rows[position] = buildRow();
+                    }
+                }
+            }
+
+            private RemoteViews buildRow() {
+                RemoteViews views = new RemoteViews(getPackageName(),
+                        R.layout.widget_detail_list_item);
+                int weatherId = data.getInt(INDEX_WEATHER_CONDITION_ID);
+                Uri weatherArtUri = getArtUri(weatherId);
+                String description = data.getString(INDEX_WEATHER_DESC);
+                String formattedMaxTemperature = Utility.formatTemperature(
+                        MultiCityWidgetRemoteViewsService.this,
+                        data.getDouble(INDEX_WEATHER_MAX_TEMP));
+                String formattedMinTemperature = Utility.formatTemperature(
+                        MultiCityWidgetRemoteViewsService.this,
+                        data.getDouble(INDEX_WEATHER_MIN_TEMP));
+                if (weatherArtUri != null) {
+                    views.setImageViewUri(R.id.widget_icon, weatherArtUri);
+                } else {
+                    views.setImageViewResource(R.id.widget_icon,
+                            Utility.getIconResourceForWeatherCondition(weatherId));
+                }
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
+                    setRemoteContentDescription(views, description);
+                }
+                views.setTextViewText(R.id.widget_date, data.getString(INDEX_CITY_NAME));
+                views.setTextViewText(R.id.widget_description, description);
+                views.setTextViewText(R.id.widget_high_temperature, formattedMaxTemperature);
+                views.setTextViewText(R.id.widget_low_temperature, formattedMinTemperature);
+
+                final Intent fillInIntent = new Intent();
+                Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
+                        data.getString(INDEX_LOCATION_SETTING),
+                        date);
+                fillInIntent.setData(weatherUri);
+                views.setOnClickFillInIntent(R.id.widget_list_item, fillInIntent);
+                return views;
+            }
+
+            private Uri getArtUri(int weatherId) {
+                if (Utility.usingLocalGraphics(MultiCityWidgetRemoteViewsService.this)) {
+                    return null;
+                }
+                if (art.indexOfKey(weatherId) < 0) {
+                    art.put(weatherId, ArtProvider.getIconUri(
+                            MultiCityWidgetRemoteViewsService.this,
+                            Utility.getArtUrlForWeatherCondition(
+                                    MultiCityWidgetRemoteViewsService.this, weatherId),
+                            ArtLoader.getInstance(MultiCityWidgetRemoteViewsService.this)
+                                    .getListIconSize()));
+                }
+                return art.get(weatherId);
+            }
+
+            @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)
+            private void setRemoteContentDescription(RemoteViews views, String description) {
+                views.setContentDescription(R.id.widget_icon, description);
+            }
+
+            @Override
+            public RemoteViews getLoadingView() {
+                return new RemoteViews(getPackageName(), R.layout.widget_detail_list_item);
+            }
+
+            @Override
+            public int getViewTypeCount() {
+                return 1;
+            }
+
+            @Override
+            public long getItemId(int position) {
+                if (data != null && data.moveToPosition(position))
+                    return data.getLong(INDEX_LOCATION_ID);
+                return position;
+            }
+
+            @Override
+            public boolean hasStableIds() {
+                return true;
+            }
+        };
+    }
+}
@@ -21,76 +21,123 @@ import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.content.ComponentName;
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
 import android.util.TypedValue;
 import android.widget.RemoteViews;
 
+import com.example.android.sunshine.app.ArtLoader;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
-import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.ArtProvider;
+import com.example.android.sunshine.app.data.ForecastDay;
+import com.example.android.sunshine.app.data.ForecastRepository;
+
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * IntentService which handles updating all Today widgets with the latest data
+ *
+ * Widgets of the same size bucket share one RemoteViews, and a widget is only updated when what
+ * it would show differs from what was last pushed to it, unless the intent has
+ * {@link #EXTRA_FORCE} set.
  */
 public class TodayWidgetIntentService extends IntentService {
-    private static final String[] FORECAST_COLUMNS = {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
-    };
-    // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_SHORT_DESC = 1;
-    private static final int INDEX_MAX_TEMP = 2;
-    private static final int INDEX_MIN_TEMP = 3;
+    private static final String LOG_TAG = TodayWidgetIntentService.class.getSimpleName();
+
+    /**
+     * Push to every widget even if its content hasn't changed, for when the host asks for an
+     * update and may have lost the views.
+     */
+    public static final String EXTRA_FORCE = "force";
+
+    // What was last pushed to each widget, by id; the service itself doesn't outlive an intent
+    private static final SparseIntArray sPushedHashes = new SparseIntArray();
+    private static int sAppliedCount;
+    private static int sSkippedCount;
 
     public TodayWidgetIntentService() {
         super("TodayWidgetIntentService");
     }
 
+    /**
+     * Forgets what was pushed to widgets that were removed.
+     */
+    static synchronized void forgetWidgets(int[] appWidgetIds) {
+        for (int appWidgetId : appWidgetIds) {
+            sPushedHashes.delete(appWidgetId);
+        }
+    }
+
+    /**
+     * @return how many widget updates were pushed
+     */
+    public static synchronized int getAppliedCount() {
+        return sAppliedCount;
+    }
+
+    /**
+     * @return how many widget updates were skipped because the widget already showed the same
+     */
+    public static synchronized int getSkippedCount() {
+        return sSkippedCount;
+    }
+
     @Override
     protected void onHandleIntent(Intent intent) {
+        boolean force = intent != null && intent.getBooleanExtra(EXTRA_FORCE, false);
+
         // Retrieve all of the Today widget ids: these are the widgets we need to update
         AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(this);
         int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(this,
                 TodayWidgetProvider.class));
 
-        // Get today's data from the ContentProvider
-        String location = Utility.getPreferredLocation(this);
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                location, System.currentTimeMillis());
-        Cursor data = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
-                null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
-        if (data == null) {
-            return;
-        }
-        if (!data.moveToFirst()) {
-            data.close();
+        // Get today's data from the shared forecast, which only hits the ContentProvider if
+        // the copy in memory is out of date
+        List<ForecastDay> forecast = ForecastRepository.getInstance(this).getForecastBlocking();
+        if (forecast.isEmpty()) {
             return;
         }
 
-        // Extract the weather data from the Cursor
-        int weatherId = data.getInt(INDEX_WEATHER_ID);
+        // Extract the weather data for today
+        ForecastDay today = forecast.get(0);
+        int weatherId = today.getWeatherId();
         int weatherArtResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
-        String description = data.getString(INDEX_SHORT_DESC);
-        double maxTemp = data.getDouble(INDEX_MAX_TEMP);
-        double minTemp = data.getDouble(INDEX_MIN_TEMP);
+        String description = today.getShortDesc();
+        double maxTemp = today.getMaxTemp();
+        double minTemp = today.getMinTemp();
         String formattedMaxTemperature = Utility.formatTemperature(this, maxTemp);
         String formattedMinTemperature = Utility.formatTemperature(this, minTemp);
-        data.close();
+        // The icon pack art goes by Uri to a local copy, so the update carries no pixels and
+        // the host decodes it once for all widgets
+        Uri weatherArtUri = Utility.usingLocalGraphics(this) ? null : ArtProvider.getIconUri(this,
+                Utility.getArtUrlForWeatherCondition(this, weatherId),
+                ArtLoader.getInstance(this).getTodayIconSize());
+        int contentHash = Arrays.hashCode(new Object[] {weatherArtResourceId, weatherArtUri,
+                description, formattedMaxTemperature, formattedMinTemperature});
+
+        // Create an Intent to launch MainActivity
+        Intent launchIntent = new Intent(this, MainActivity.class);
+        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, launchIntent, 0);
+
+        int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
+        int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
+        // One RemoteViews for each layout, built when a widget first needs it
+        SparseArray<RemoteViews> viewsByLayout = new SparseArray<>();
+        int applied = 0;
+        int skipped = 0;
 
         // Perform this loop procedure for each Today widget
         for (int appWidgetId : appWidgetIds) {
             // Find the correct layout based on the widget's width
             int widgetWidth = getWidgetWidth(appWidgetManager, appWidgetId);
-            int defaultWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_default_width);
-            int largeWidth = getResources().getDimensionPixelSize(R.dimen.widget_today_large_width);
             int layoutId;
             if (widgetWidth >= largeWidth) {
                 layoutId = R.layout.widget_today_large;
@@ -99,25 +146,51 @@ public class TodayWidgetIntentService extends IntentService {
             } else {
                 layoutId = R.layout.widget_today_small;
             }
-            RemoteViews views = new RemoteViews(getPackageName(), layoutId);
 
-            // Add the data to the RemoteViews
-            views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
-            // Content Descriptions for RemoteViews were only added in ICS MR1
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
-                setRemoteContentDescription(views, description);
+            // The layout is part of what the widget shows: a resize needs an update too
+            int hash = 31 * contentHash + layoutId;
+            synchronized (TodayWidgetIntentService.class) {
+                if (!force && sPushedHashes.indexOfKey(appWidgetId) >= 0
+                        && sPushedHashes.get(appWidgetId) == hash) {
+                    skipped++;
+                    continue;
+                }
             }
-            views.setTextViewText(R.id.widget_description, description);
-            views.setTextViewText(R.id.widget_high_temperature, formattedMaxTemperature);
-            views.setTextViewText(R.id.widget_low_temperature, formattedMinTemperature);
 
-            // Create an Intent to launch MainActivity
-            Intent launchIntent = new Intent(this, MainActivity.class);
-            PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, launchIntent, 0);
-            views.setOnClickPendingIntent(R.id.widget, pendingIntent);
+            RemoteViews views = viewsByLayout.get(layoutId);
+            if (views == null) {
+                views = new RemoteViews(getPackageName(), layoutId);
+
+                // Add the data to the RemoteViews
+                if (weatherArtUri != null) {
+                    views.setImageViewUri(R.id.widget_icon, weatherArtUri);
+                } else {
+                    views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
+                }
+                // Content Descriptions for RemoteViews were only added in ICS MR1
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
+                    setRemoteContentDescription(views, description);
+                }
+                views.setTextViewText(R.id.widget_description, description);
+                views.setTextViewText(R.id.widget_high_temperature, formattedMaxTemperature);
+                views.setTextViewText(R.id.widget_low_temperature, formattedMinTemperature);
+                views.setOnClickPendingIntent(R.id.widget, pendingIntent);
+                viewsByLayout.put(layoutId, views);
+            }
 
             // Tell the AppWidgetManager to perform an update on the current app widget
             appWidgetManager.updateAppWidget(appWidgetId, views);
+            applied++;
+            synchronized (TodayWidgetIntentService.class) {
+                sPushedHashes.put(appWidgetId, hash);
+            }
+        }
+
+        synchronized (TodayWidgetIntentService.class) {
+            sAppliedCount += applied;
+            sSkippedCount += skipped;
+            Log.d(LOG_TAG, "Updated " + applied + " widgets, skipped " + skipped + " unchanged; "
+                    + sAppliedCount + " updates and " + sSkippedCount + " skips so far");
         }
     }
 
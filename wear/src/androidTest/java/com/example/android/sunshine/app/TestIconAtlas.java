@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.test.AndroidTestCase;
+
+public class TestIconAtlas extends AndroidTestCase {
+
+    public void testEveryConditionHasItsOwnIcon() {
+        Rect clear = new Rect();
+        Rect storm = new Rect();
+        IconAtlas.getIconRect(WatchFaceRenderer.getIconResourceForWeatherCondition(800), clear);
+        IconAtlas.getIconRect(WatchFaceRenderer.getIconResourceForWeatherCondition(211), storm);
+        assertEquals(IconAtlas.ICON_SIZE, clear.width());
+        assertEquals(IconAtlas.ICON_SIZE, clear.height());
+        assertFalse("Error: Two icons share a rect in the atlas", Rect.intersects(clear, storm));
+    }
+
+    public void testVariants() {
+        IconAtlas atlas = IconAtlas.getInstance(mContext.getResources());
+        Bitmap color = atlas.getAtlas(IconAtlas.VARIANT_COLOR);
+        assertEquals(IconAtlas.ICON_SIZE * IconAtlas.ICON_COUNT, color.getWidth());
+        assertEquals(IconAtlas.ICON_SIZE, color.getHeight());
+        assertSame("Error: The atlas was built twice", color,
+                atlas.getAtlas(IconAtlas.VARIANT_COLOR));
+
+        Bitmap gray = atlas.getAtlas(IconAtlas.VARIANT_GRAY);
+        assertEquals(Bitmap.Config.ALPHA_8, gray.getConfig());
+
+        Bitmap mono = atlas.getAtlas(IconAtlas.VARIANT_MONO);
+        assertEquals(Bitmap.Config.ALPHA_8, mono.getConfig());
+        boolean anyOn = false;
+        for (int y = 0; y < mono.getHeight(); y++) {
+            for (int x = 0; x < mono.getWidth(); x++) {
+                int alpha = Color.alpha(mono.getPixel(x, y));
+                assertTrue("Error: Low-bit icons must be fully on or off",
+                        alpha == 0 || alpha == 255);
+                anyOn |= alpha == 255;
+            }
+        }
+        assertTrue("Error: The low-bit icons are empty", anyOn);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.TimeUnit;
+
+public class TestRedrawSchedule extends AndroidTestCase {
+
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+    public void testWakesAtMinuteBoundaries() {
+        long minute = 1465376400000L;
+        assertEquals(MINUTE_MS, SunshineWatchFace.getDelayToNextUpdate(minute, 0));
+        assertEquals(MINUTE_MS - 12345,
+                SunshineWatchFace.getDelayToNextUpdate(minute + 12345, 0));
+        assertEquals(1, SunshineWatchFace.getDelayToNextUpdate(minute + MINUTE_MS - 1, 0));
+    }
+
+    public void testAnimatesEverySecondUntilTheWindowEnds() {
+        long minute = 1465376400000L;
+        long animationEnd = minute + 5000;
+        assertEquals(1000, SunshineWatchFace.getDelayToNextUpdate(minute, animationEnd));
+        assertEquals(750, SunshineWatchFace.getDelayToNextUpdate(minute + 250, animationEnd));
+        assertEquals("Error: The last animation frame should land on the end of the window",
+                200, SunshineWatchFace.getDelayToNextUpdate(minute + 4800, animationEnd));
+        assertEquals("Error: After the window we should be back to once a minute",
+                MINUTE_MS - 5000, SunshineWatchFace.getDelayToNextUpdate(animationEnd, animationEnd));
+    }
+
+    public void testFrameCounter() {
+        FrameCounter counter = new FrameCounter();
+        long hour = 1465376400000L / HOUR_MS * HOUR_MS;
+        assertFalse(counter.onFrame(hour));
+        // A frame a minute for the rest of the hour
+        for (int i = 1; i < 60; i++) {
+            assertFalse(counter.onFrame(hour + i * MINUTE_MS));
+        }
+        assertEquals(60, counter.getCount());
+        assertEquals(-1, counter.getLastHourCount());
+
+        assertTrue("Error: The first frame of an hour should close the previous one",
+                counter.onFrame(hour + HOUR_MS));
+        assertEquals(60, counter.getLastHourCount());
+        assertEquals(1, counter.getCount());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Drives the draw path of the watch face against an offscreen canvas, the way the engine does,
+    for each shape and mode.  Reports ns/frame, allocations/frame and the bitmap memory the
+    renderer holds, and fails when a steady-state frame allocates or the renderer holds more
+    than a layer and the icon atlas.  Frame time depends on the device and what else it is
+    doing, so it is only checked against full redraws measured in the same run: a steady-state
+    frame composites the cached layer and must stay well under one.  Filter logcat on the tag
+    to compare render changes on the same device.
+ */
+public class TestWatchFaceRenderBenchmark extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestWatchFaceRenderBenchmark.class.getSimpleName();
+
+    private static final int ROUND_SIZE = 320;
+    private static final int SQUARE_SIZE = 280;
+
+    private static final int WARMUP_FRAMES = 60;
+    private static final int FRAMES = 600;
+
+    // Generous: a steady-state frame is a full redraw without drawing the layer
+    private static final float MAX_CACHED_TO_FULL_RATIO = 0.75f;
+
+    private static final int MODE_INTERACTIVE = 0;
+    private static final int MODE_AMBIENT = 1;
+    private static final int MODE_LOW_BIT_AMBIENT = 2;
+
+    private long startOfMorning() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2016, Calendar.JUNE, 8, 9, 0, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    public void testRoundInteractive() {
+        benchmark(true, MODE_INTERACTIVE);
+    }
+
+    public void testRoundAmbient() {
+        benchmark(true, MODE_AMBIENT);
+    }
+
+    public void testRoundLowBitAmbient() {
+        benchmark(true, MODE_LOW_BIT_AMBIENT);
+    }
+
+    public void testSquareInteractive() {
+        benchmark(false, MODE_INTERACTIVE);
+    }
+
+    public void testSquareAmbient() {
+        benchmark(false, MODE_AMBIENT);
+    }
+
+    public void testSquareLowBitAmbient() {
+        benchmark(false, MODE_LOW_BIT_AMBIENT);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void benchmark(boolean round, int mode) {
+        String name = (round ? "round" : "square") + "/"
+                + (mode == MODE_INTERACTIVE ? "interactive"
+                : mode == MODE_AMBIENT ? "ambient" : "low-bit ambient");
+        int size = round ? ROUND_SIZE : SQUARE_SIZE;
+        boolean interactive = mode == MODE_INTERACTIVE;
+
+        WatchFaceRenderer renderer = new WatchFaceRenderer(mContext.getResources(), Color.BLUE);
+        renderer.setRound(round);
+        renderer.setLowBitAmbient(mode == MODE_LOW_BIT_AMBIENT);
+        renderer.setAmbient(!interactive);
+        // Interactive frames show seconds while the tap animation runs, ambient ones never do.
+        renderer.setShowSeconds(interactive);
+        renderer.setWeather("25°", "16°", 800);
+
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Rect bounds = new Rect(0, 0, size, size);
+
+        // Interactive frames come every second, ambient ones every minute.
+        long frameIntervalMs = interactive ? 1000 : TimeUnit.MINUTES.toMillis(1);
+        long time = startOfMorning();
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            renderer.draw(canvas, bounds, time);
+            time += frameIntervalMs;
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            renderer.draw(canvas, bounds, time);
+            time += frameIntervalMs;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        Debug.stopAllocCounting();
+        int allocations = Debug.getThreadAllocCount();
+        int bitmapBytes = renderer.getBitmapByteCount();
+
+        // The baseline: the same frames with the layer redrawn every time
+        TimeZone timeZone = TimeZone.getDefault();
+        startNanos = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            renderer.setTimeZone(timeZone);
+            renderer.draw(canvas, bounds, time);
+            time += frameIntervalMs;
+        }
+        long fullRedrawElapsed = System.nanoTime() - startNanos;
+
+        long nsPerFrame = elapsed / FRAMES;
+        long fullRedrawNsPerFrame = fullRedrawElapsed / FRAMES;
+        Log.d(LOG_TAG, name + ": " + nsPerFrame + " ns/frame, "
+                + fullRedrawNsPerFrame + " ns/full redraw, "
+                + ((float) allocations / FRAMES) + " allocations/frame, "
+                + bitmapBytes + " bitmap bytes");
+
+        renderer.release();
+        bitmap.recycle();
+
+        // Even the ambient frames, eleven hours of them, stay within the day.
+        assertEquals("Error: " + name + " steady-state frames allocated", 0, allocations);
+        assertTrue("Error: " + name + " frames took " + nsPerFrame + " ns, full redraws "
+                        + fullRedrawNsPerFrame + " ns",
+                nsPerFrame < fullRedrawNsPerFrame * MAX_CACHED_TO_FULL_RATIO);
+        int layerBytes = size * size * (interactive ? 4 : 2);
+        // The atlas is shared by the tests; at most every variant has been built.
+        int iconBytes = IconAtlas.ICON_COUNT * IconAtlas.ICON_SIZE * IconAtlas.ICON_SIZE
+                * (4 + 1 + 1);
+        assertTrue("Error: " + name + " holds " + bitmapBytes + " bitmap bytes",
+                bitmapBytes <= layerBytes + iconBytes);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Calendar;
+
+public class TestWatchFaceRenderer extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestWatchFaceRenderer.class.getSimpleName();
+
+    private static final int SIZE = 320;
+    // Ten minutes of interactive frames, one a second
+    private static final int FRAMES = 600;
+
+    private long startOfMorning() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2016, Calendar.JUNE, 8, 9, 0, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    /*
+        Steady-state frames, including the ones where the minute changes, must not produce any
+        garbage.  Only a new day or new weather may allocate.
+     */
+    @SuppressWarnings("deprecation")
+    public void testDrawDoesNotAllocate() {
+        WatchFaceRenderer renderer = new WatchFaceRenderer(mContext.getResources(), Color.BLUE);
+        renderer.setRound(true);
+        renderer.setWeather("25°", "16°", 800);
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Rect bounds = new Rect(0, 0, SIZE, SIZE);
+
+        long start = startOfMorning();
+        // First frame of the day decodes the icon and formats the date.
+        renderer.draw(canvas, bounds, start);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        long startNanos = System.nanoTime();
+        for (int i = 1; i <= FRAMES; i++) {
+            renderer.draw(canvas, bounds, start + i * 1000L);
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        Debug.stopAllocCounting();
+        int allocations = Debug.getThreadAllocCount();
+
+        Log.d(LOG_TAG, "draw: " + (elapsed / FRAMES) + " ns/frame, "
+                + allocations + " allocations over " + FRAMES + " frames");
+        assertEquals("Error: Drawing a steady-state frame allocated", 0, allocations);
+        bitmap.recycle();
+    }
+
+    /*
+        New weather only repaints its own region of the layer, which must leave the face exactly
+        as a full redraw would, including where the old, wider temperatures were.
+     */
+    public void testWeatherRepaintMatchesFullDraw() {
+        Rect bounds = new Rect(0, 0, SIZE, SIZE);
+        long now = startOfMorning();
+
+        WatchFaceRenderer renderer = new WatchFaceRenderer(mContext.getResources(), Color.BLUE);
+        renderer.setRound(true);
+        renderer.setWeather("-12°", "-20°", 600);
+        Bitmap repainted = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(repainted);
+        renderer.draw(canvas, bounds, now);
+        assertTrue(renderer.setWeather("5°", "1°", 800));
+        assertFalse("Error: The same weather should not need a redraw",
+                renderer.setWeather("5°", "1°", 800));
+        renderer.draw(canvas, bounds, now);
+
+        WatchFaceRenderer fresh = new WatchFaceRenderer(mContext.getResources(), Color.BLUE);
+        fresh.setRound(true);
+        fresh.setWeather("5°", "1°", 800);
+        Bitmap drawn = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        fresh.draw(new Canvas(drawn), bounds, now);
+
+        assertTrue("Error: Repainting the weather differs from drawing it", drawn.sameAs(repainted));
+        renderer.release();
+        fresh.release();
+        repainted.recycle();
+        drawn.recycle();
+    }
+
+    public void testIconResources() {
+        assertEquals(R.drawable.ic_storm, WatchFaceRenderer.getIconResourceForWeatherCondition(211));
+        assertEquals(R.drawable.ic_rain, WatchFaceRenderer.getIconResourceForWeatherCondition(502));
+        assertEquals(R.drawable.ic_snow, WatchFaceRenderer.getIconResourceForWeatherCondition(511));
+        assertEquals(R.drawable.ic_light_clouds, WatchFaceRenderer.getIconResourceForWeatherCondition(801));
+        assertEquals(R.drawable.ic_cloudy, WatchFaceRenderer.getIconResourceForWeatherCondition(804));
+        assertEquals("Error: Unknown conditions should fall back to clear",
+                R.drawable.ic_clear, WatchFaceRenderer.getIconResourceForWeatherCondition(0));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+
+import java.util.Arrays;
+
+public class TestWeatherPayload extends AndroidTestCase {
+
+    // The version 2 layout, byte for byte, as the phone writes it.  The app module's
+    // TestWeatherPayload pins the same bytes, so the two copies of the class can't drift apart.
+    private static final byte[] PINNED_BYTES = {
+            2, 1, 0, 0, 1, 85, 47, 61, 98, -128, 2,
+            0, 37, 127, -52, 0, -42, -1, -35, 1, -12,
+            0, 37, 127, -51, -1, -1, -1, -120, 0, -45
+    };
+
+    public void testReadsPinnedLayout() {
+        WeatherPayload payload = WeatherPayload.fromBytes(PINNED_BYTES);
+        assertNotNull(payload);
+        assertTrue(payload.isMetric());
+        assertEquals(1465376400000L, payload.getPublishedTime());
+        assertEquals(2, payload.getDays().size());
+
+        WeatherPayload.Day today = payload.getDay(2457548);
+        assertEquals(21.4, today.maxTemp, 0.001);
+        assertEquals(-3.5, today.minTemp, 0.001);
+        assertEquals(500, today.weatherId);
+        WeatherPayload.Day tomorrow = payload.getDay(2457549);
+        assertEquals(-0.1, tomorrow.maxTemp, 0.001);
+        assertEquals(-12.0, tomorrow.minTemp, 0.001);
+        assertEquals(211, tomorrow.weatherId);
+
+        assertTrue("Error: Re-encoding must give back the phone's bytes",
+                Arrays.equals(PINNED_BYTES, payload.toBytes()));
+    }
+}
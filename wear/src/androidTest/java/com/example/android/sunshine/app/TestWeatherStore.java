@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TestWeatherStore extends AndroidTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.getSharedPreferences("weather", Context.MODE_PRIVATE).edit().clear().commit();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.getSharedPreferences("weather", Context.MODE_PRIVATE).edit().clear().commit();
+        super.tearDown();
+    }
+
+    private static byte[] payloadFrom(long firstDay, int days) {
+        return payloadFrom(firstDay, firstDay, days, 25.0);
+    }
+
+    private static byte[] payloadFrom(long publishedTime, long firstDay, int days,
+                                      double maxTemp) {
+        List<WeatherPayload.Day> forecast = new ArrayList<>();
+        for (int i = 0; i < days; i++) {
+            forecast.add(new WeatherPayload.Day(
+                    WeatherPayload.getJulianDay(firstDay + TimeUnit.DAYS.toMillis(i)),
+                    maxTemp, 16.0, 800));
+        }
+        return new WeatherPayload(publishedTime, true, forecast).toBytes();
+    }
+
+    private long nineInTheMorning() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2016, Calendar.JUNE, 8, 9, 0, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    public void testSurvivesRestart() {
+        long today = nineInTheMorning();
+        assertNull(new WeatherStore(mContext).getPayload());
+        assertTrue(new WeatherStore(mContext).save(payloadFrom(today, 3)));
+
+        WeatherPayload payload = new WeatherStore(mContext).getPayload();
+        assertNotNull(payload);
+        assertTrue(payload.isMetric());
+        assertEquals(3, payload.getDays().size());
+        WeatherPayload.Day day = payload.getDay(WeatherPayload.getJulianDay(today));
+        assertEquals(25.0, day.maxTemp);
+        assertEquals(16.0, day.minTemp);
+        assertEquals(800, day.weatherId);
+    }
+
+    public void testIgnoresRepeatsAndGarbage() {
+        long today = nineInTheMorning();
+        WeatherStore store = new WeatherStore(mContext);
+        assertTrue(store.save(payloadFrom(today, 3)));
+        assertFalse("Error: The same payload again is not a change",
+                store.save(payloadFrom(today, 3)));
+        assertFalse(store.save(new byte[] { 42 }));
+        assertFalse(store.save(null));
+        assertNotNull(store.getPayload());
+    }
+
+    public void testIgnoresOlderWeather() {
+        long today = nineInTheMorning();
+        long later = today + TimeUnit.HOURS.toMillis(1);
+        WeatherStore store = new WeatherStore(mContext);
+        assertTrue(store.save(payloadFrom(later, today, 3, 30.0)));
+        assertFalse("Error: Weather published earlier must not replace newer weather",
+                store.save(payloadFrom(today, today, 3, 20.0)));
+        assertEquals(30.0, store.getPayload().getDay(WeatherPayload.getJulianDay(today)).maxTemp);
+        assertTrue("Error: Newer weather must replace what we have",
+                store.save(payloadFrom(later + 1, today, 3, 20.0)));
+    }
+
+    public void testFreshWhileRecentAndTodayIsCovered() {
+        long today = nineInTheMorning();
+        WeatherStore store = new WeatherStore(mContext);
+        assertFalse("Error: No weather can't be fresh", store.isFresh(today));
+
+        store.save(payloadFrom(today, 3));
+        assertTrue(store.isFresh(today));
+        assertTrue(store.isFresh(today + WeatherStore.MAX_AGE_MS - 1));
+        assertFalse("Error: Weather older than the max age must not be fresh",
+                store.isFresh(today + WeatherStore.MAX_AGE_MS));
+        assertFalse("Error: A multi-day payload must not stay fresh for days",
+                store.isFresh(today + TimeUnit.DAYS.toMillis(2)));
+        assertFalse(store.isFresh(today - TimeUnit.DAYS.toMillis(1)));
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the frames the watch face draws in each wall clock hour, which is what the redraw
+ * schedule costs in battery.
+ */
+class FrameCounter {
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+    private long mHour = -1;
+    private int mCount;
+    private int mLastHourCount = -1;
+
+    /**
+     * @param now the time of the frame
+     * @return true if this frame is the first of a new hour, in which case
+     * {@link #getLastHourCount()} holds the count for the hour that ended
+     */
+    boolean onFrame(long now) {
+        long hour = now / HOUR_MS;
+        boolean newHour = false;
+        if (hour != mHour) {
+            if (mHour != -1) {
+                mLastHourCount = mCount;
+                newHour = true;
+            }
+            mHour = hour;
+            mCount = 0;
+        }
+        mCount++;
+        return newHour;
+    }
+
+    /**
+     * @return the frames drawn in the hour so far
+     */
+    int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return the frames drawn in the last hour that had any, or -1 before a full hour went by
+     */
+    int getLastHourCount() {
+        return mLastHourCount;
+    }
+}
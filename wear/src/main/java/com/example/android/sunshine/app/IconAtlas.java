@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Every weather icon the watch face shows, scaled once per process into a single strip, so that
+ * drawing an icon is a blit of a sub-rect of it.
+ * <p>
+ * There are three variants of the strip, each built the first time it is asked for: the icons in
+ * color for interactive mode, and two ALPHA_8 ones, a byte a pixel, to be drawn with the color
+ * of a paint: grayscale for ambient mode and dithered black and white for low-bit ambient
+ * displays, which can't show anything in between.
+ */
+class IconAtlas {
+    static final int ICON_SIZE = 56;
+
+    static final int VARIANT_COLOR = 0;
+    static final int VARIANT_GRAY = 1;
+    static final int VARIANT_MONO = 2;
+    private static final int VARIANT_COUNT = 3;
+
+    private static final int[] ICONS = {
+            R.drawable.ic_clear,
+            R.drawable.ic_light_clouds,
+            R.drawable.ic_cloudy,
+            R.drawable.ic_fog,
+            R.drawable.ic_light_rain,
+            R.drawable.ic_rain,
+            R.drawable.ic_snow,
+            R.drawable.ic_storm
+    };
+    static final int ICON_COUNT = ICONS.length;
+
+    private static IconAtlas sInstance;
+
+    private final Resources mResources;
+    private final Bitmap[] mVariants = new Bitmap[VARIANT_COUNT];
+
+    static synchronized IconAtlas getInstance(Resources resources) {
+        if (sInstance == null) {
+            sInstance = new IconAtlas(resources);
+        }
+        return sInstance;
+    }
+
+    private IconAtlas(Resources resources) {
+        mResources = resources;
+    }
+
+    /**
+     * @return the strip for a variant, building it if needed
+     */
+    synchronized Bitmap getAtlas(int variant) {
+        Bitmap atlas = mVariants[variant];
+        if (atlas == null) {
+            atlas = variant == VARIANT_COLOR
+                    ? buildColor()
+                    : buildAlpha(getAtlas(VARIANT_COLOR), variant == VARIANT_MONO);
+            mVariants[variant] = atlas;
+        }
+        return atlas;
+    }
+
+    /**
+     * Sets out to the icon's rect in the strips.  Unknown icons get the first one.
+     */
+    static void getIconRect(int iconRes, Rect out) {
+        int index = 0;
+        for (int i = 0; i < ICON_COUNT; i++) {
+            if (ICONS[i] == iconRes) {
+                index = i;
+                break;
+            }
+        }
+        out.set(index * ICON_SIZE, 0, (index + 1) * ICON_SIZE, ICON_SIZE);
+    }
+
+    /**
+     * @return the bytes held by the variants built so far
+     */
+    synchronized int getByteCount() {
+        int bytes = 0;
+        for (Bitmap atlas : mVariants) {
+            if (atlas != null) {
+                bytes += atlas.getByteCount();
+            }
+        }
+        return bytes;
+    }
+
+    private Bitmap buildColor() {
+        Bitmap atlas = Bitmap.createBitmap(ICON_SIZE * ICON_COUNT, ICON_SIZE,
+                Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(atlas);
+        Paint paint = new Paint();
+        paint.setFilterBitmap(true);
+        Rect dst = new Rect();
+        for (int i = 0; i < ICON_COUNT; i++) {
+            Bitmap decoded = BitmapFactory.decodeResource(mResources, ICONS[i]);
+            getIconRect(ICONS[i], dst);
+            canvas.drawBitmap(decoded, null, dst, paint);
+            decoded.recycle();
+        }
+        return atlas;
+    }
+
+    /*
+        Turns the color icons into coverage: each pixel's luminance times its alpha.  For the
+        mono variant the coverage is dithered to on or off with Floyd-Steinberg error diffusion,
+        which keeps the shading of the clouds readable with a single bit.
+     */
+    private static Bitmap buildAlpha(Bitmap color, boolean mono) {
+        int width = color.getWidth();
+        int height = color.getHeight();
+        int[] pixels = new int[width * height];
+        color.getPixels(pixels, 0, width, 0, 0, width, height);
+
+        float[] coverage = new float[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            float luminance = (0.299f * Color.red(pixel) + 0.587f * Color.green(pixel)
+                    + 0.114f * Color.blue(pixel)) / 255f;
+            coverage[i] = Color.alpha(pixel) * luminance;
+        }
+
+        byte[] alpha = new byte[pixels.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                float value = Math.max(0f, Math.min(255f, coverage[i]));
+                if (!mono) {
+                    alpha[i] = (byte) Math.round(value);
+                    continue;
+                }
+                float quantized = value < 128f ? 0f : 255f;
+                alpha[i] = (byte) quantized;
+                float error = value - quantized;
+                // Only spread within the icon, not into its neighbours in the strip.
+                boolean hasRight = (x + 1) % ICON_SIZE != 0;
+                boolean hasLeft = x % ICON_SIZE != 0;
+                if (hasRight) {
+                    coverage[i + 1] += error * 7 / 16;
+                }
+                if (y + 1 < height) {
+                    if (hasLeft) {
+                        coverage[i + width - 1] += error * 3 / 16;
+                    }
+                    coverage[i + width] += error * 5 / 16;
+                    if (hasRight) {
+                        coverage[i + width + 1] += error / 16;
+                    }
+                }
+            }
+        }
+
+        Bitmap atlas = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        atlas.copyPixelsFromBuffer(ByteBuffer.wrap(alpha));
+        return atlas;
+    }
+}
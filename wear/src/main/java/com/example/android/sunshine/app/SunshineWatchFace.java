@@ -20,14 +20,9 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.res.Resources;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Typeface;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
@@ -36,10 +31,10 @@ import android.support.annotation.Nullable;
 import android.support.v4.content.ContextCompat;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
+import android.util.Log;
 import android.view.Gravity;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
-import android.widget.Toast;
 
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
@@ -48,37 +43,66 @@ import com.google.android.gms.wearable.DataApi;
 import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
 import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
 import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.MessageEvent;
+import com.google.android.gms.wearable.Node;
 import com.google.android.gms.wearable.NodeApi;
+import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
 import java.lang.ref.WeakReference;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Digital watch face with seconds. In ambient mode, the seconds aren't displayed. On devices with
- * low-bit ambient mode, the text is drawn without anti-aliasing in ambient mode.
+ * Digital watch face showing hours and minutes, so it redraws once a minute.  A tap shows the
+ * seconds for a few seconds, updated every second.  On devices with low-bit ambient mode, the
+ * text is drawn without anti-aliasing in ambient mode.
  */
 public class SunshineWatchFace extends CanvasWatchFaceService {
-    private static final Typeface NORMAL_TYPEFACE =
-            Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
+    /**
+     * Update rate in milliseconds for interactive mode.  Only hours and minutes are shown, so we
+     * wake up at minute boundaries.
+     */
+    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Update rate in milliseconds while the seconds are shown after a tap.
+     */
+    private static final long ANIMATION_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
 
     /**
-     * Update rate in milliseconds for interactive mode. We update once a second since seconds are
-     * displayed in interactive mode.
+     * How long the seconds are shown after a tap.
      */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long TAP_ANIMATION_DURATION_MS = TimeUnit.SECONDS.toMillis(5);
 
     /**
      * Handler message id for updating the time periodically in interactive mode.
      */
     private static final int MSG_UPDATE_TIME = 0;
 
+    /**
+     * Minimum time between two requests to the phone for fresh weather, so a face toggling
+     * visibility while the phone is away doesn't keep asking.
+     */
+    private static final long WEATHER_REQUEST_INTERVAL_MS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Returns how long to wait before the next interactive update: until the next second while
+     * animating (but no later than the end of the animation), otherwise until the next minute.
+     */
+    static long getDelayToNextUpdate(long now, long animationEndMs) {
+        if (now < animationEndMs) {
+            long delayMs = ANIMATION_UPDATE_RATE_MS - (now % ANIMATION_UPDATE_RATE_MS);
+            return Math.min(delayMs, animationEndMs - now);
+        }
+        return INTERACTIVE_UPDATE_RATE_MS - (now % INTERACTIVE_UPDATE_RATE_MS);
+    }
+
     @Override
     public Engine onCreateEngine() {
         return new Engine();
@@ -105,39 +129,33 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
     }
 
     private class Engine extends CanvasWatchFaceService.Engine implements DataApi.DataListener,
-            GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener {
+            MessageApi.MessageListener, GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener {
 
         static final String KEY_WEATHER_PATH = "/weather";
-        static final String KEY_WEATHER_ID = "WEATHER_ID";
-        static final String KEY_TEMP_MAX = "MAX";
-        static final String KEY_TEMP_MIN = "MIN";
+        static final String KEY_WEATHER = "WEATHER";
         private static final String TAG = "@@@@";
 
         final Handler mUpdateTimeHandler = new EngineHandler(this);
         boolean mRegisteredTimeZoneReceiver = false;
         GoogleApiClient mGoogleApiClient;
-        Paint mBackgroundPaint;
-        Paint mTimeTextPaint;
-        Paint mMaxTempTextPaint;
-        Paint mMinTempTextPaint;
-        Paint mDateTextPaint;
+        WatchFaceRenderer mRenderer;
+        WeatherStore mWeatherStore;
+        String mTemperatureFormat;
+        long mLastWeatherRequestMs;
+        // The local day whose forecast is shown
+        long mWeatherDayStartMs;
+        long mWeatherDayEndMs;
+        final FrameCounter mFrameCounter = new FrameCounter();
         boolean mAmbient;
-        Calendar mCalendar;
+        // Seconds are shown until then, see onTapCommand
+        long mAnimationEndMs;
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mCalendar.setTimeZone(TimeZone.getDefault());
+                mRenderer.setTimeZone(TimeZone.getDefault());
                 invalidate();
             }
         };
-        float mXOffset;
-        float mYOffset;
-        float mExtraYOffset;
-        float mExtraXOffset;
-        private String mTempMax = "0°";
-        private String mTempMin = "0°";
-        private int mWeatherId;
-        private Bitmap mWeatherIcon;
 
         /**
          * Whether the display supports fewer bits for each color in ambient mode. When true, we
@@ -164,37 +182,22 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                     .addApi(Wearable.API)
                     .build();
 
-            Resources resources = SunshineWatchFace.this.getResources();
-            mYOffset = resources.getDimension(R.dimen.digital_time_y_offset);
-            mExtraYOffset = resources.getDimension(R.dimen.digital_extra_y_offset);
-            mExtraXOffset = resources.getDimension(R.dimen.digital_extra_x_offset);
-
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(ContextCompat.getColor(SunshineWatchFace.this, R.color.background));
-
-            mTimeTextPaint = createTextPaint(Color.WHITE, 255);
-            mMaxTempTextPaint = createTextPaint(Color.WHITE, 255);
-            mMinTempTextPaint = createTextPaint(Color.WHITE, 150);
-            mDateTextPaint = createTextPaint(Color.WHITE, 150);
+            mRenderer = new WatchFaceRenderer(SunshineWatchFace.this.getResources(),
+                    ContextCompat.getColor(SunshineWatchFace.this, R.color.background));
 
-            mCalendar = Calendar.getInstance();
+            // Show the last weather we got right away, even if it's old.
+            mTemperatureFormat = getString(R.string.format_temperature);
+            mWeatherStore = new WeatherStore(SunshineWatchFace.this);
+            showWeather(System.currentTimeMillis());
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mRenderer.release();
             super.onDestroy();
         }
 
-        private Paint createTextPaint(int textColor, int alpha) {
-            Paint paint = new Paint();
-            paint.setColor(textColor);
-            paint.setTypeface(NORMAL_TYPEFACE);
-            paint.setAntiAlias(true);
-            paint.setAlpha(alpha);
-            return paint;
-        }
-
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
@@ -203,11 +206,12 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                 mGoogleApiClient.connect();
                 registerReceiver();
                 // Update time zone in case it changed while we weren't visible.
-                mCalendar.setTimeZone(TimeZone.getDefault());
+                mRenderer.setTimeZone(TimeZone.getDefault());
                 invalidate();
             } else {
                 if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
                     Wearable.DataApi.removeListener(mGoogleApiClient, this);
+                    Wearable.MessageApi.removeListener(mGoogleApiClient, this);
                     mGoogleApiClient.disconnect();
                 }
                 unregisterReceiver();
@@ -240,31 +244,14 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             super.onApplyWindowInsets(insets);
 
             // Load resources that have alternate values for round watches.
-            Resources resources = SunshineWatchFace.this.getResources();
-            boolean isRound = insets.isRound();
-            mXOffset = resources.getDimension(isRound
-                    ? R.dimen.digital_x_offset_round : R.dimen.digital_x_offset);
-            float timeTextSize = resources.getDimension(isRound
-                    ? R.dimen.digital_text_size_round : R.dimen.digital_text_size);
-            float tempTextSize = resources.getDimension(isRound
-                    ? R.dimen.digital_temp_size_round : R.dimen.digital_temp_size);
-            float dateTextSize = resources.getDimension(isRound
-                    ? R.dimen.digital_date_size_round : R.dimen.digital_date_size);
-
-            mTimeTextPaint.setTextSize(timeTextSize);
-            mTimeTextPaint.setTextAlign(Paint.Align.CENTER);
-            mMaxTempTextPaint.setTextSize(tempTextSize);
-            mMaxTempTextPaint.setTextAlign(Paint.Align.CENTER);
-            mMinTempTextPaint.setTextSize(tempTextSize);
-            mMinTempTextPaint.setTextAlign(Paint.Align.CENTER);
-            mDateTextPaint.setTextSize(dateTextSize);
-            mDateTextPaint.setTextAlign(Paint.Align.CENTER);
+            mRenderer.setRound(insets.isRound());
         }
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            mRenderer.setLowBitAmbient(mLowBitAmbient);
         }
 
         @Override
@@ -278,11 +265,12 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             super.onAmbientModeChanged(inAmbientMode);
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
-                if (mLowBitAmbient) {
-                    mTimeTextPaint.setAntiAlias(!inAmbientMode);
-                    mMaxTempTextPaint.setAntiAlias(!inAmbientMode);
-                    mMinTempTextPaint.setAntiAlias(!inAmbientMode);
-                    mDateTextPaint.setAntiAlias(!inAmbientMode);
+                // Drops anti-aliasing on low-bit displays.
+                mRenderer.setAmbient(inAmbientMode);
+                if (inAmbientMode) {
+                    // Ambient mode only updates once a minute.
+                    mAnimationEndMs = 0;
+                    mRenderer.setShowSeconds(false);
                 }
                 invalidate();
             }
@@ -293,8 +281,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         }
 
         /**
-         * Captures tap event (and tap type) and toggles the background color if the user finishes
-         * a tap.
+         * Captures tap event (and tap type) and shows the seconds for a little while if the user
+         * finishes a tap.
          */
         @Override
         public void onTapCommand(int tapType, int x, int y, long eventTime) {
@@ -307,45 +295,24 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                     break;
                 case TAP_TYPE_TAP:
                     // The user has completed the tap gesture.
-                    // TODO: Add code to handle the tap gesture.
-                    Toast.makeText(getApplicationContext(), R.string.message, Toast.LENGTH_SHORT)
-                            .show();
+                    mAnimationEndMs = System.currentTimeMillis() + TAP_ANIMATION_DURATION_MS;
+                    // Redraws right away and switches to the animation rate.
+                    updateTimer();
                     break;
             }
-            invalidate();
         }
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            // Draw the background.
-            if (isInAmbientMode()) {
-                canvas.drawColor(Color.BLACK);
-            } else {
-                canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
-            }
-
-
             long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
-
-            String time = String.format(Locale.ENGLISH, "%d:%02d", mCalendar.get(Calendar.HOUR),
-                    mCalendar.get(Calendar.MINUTE));
-            String date = new SimpleDateFormat("EEE, MMM dd yyyy", Locale.ENGLISH).format(mCalendar.getTime());
-
-            float centerX = bounds.centerX();
-            float centerY = bounds.centerY();
-
-            Rect textBounds = new Rect();
-            mDateTextPaint.getTextBounds(date, 0, date.length(), textBounds);
-            canvas.drawText(date, centerX, centerY + (textBounds.height() / 2), mDateTextPaint);
-            canvas.drawText(time, centerX, centerY - (textBounds.height() / 2) - mExtraYOffset, mTimeTextPaint);
-            canvas.drawText(mTempMax, centerX, centerY + textBounds.height() + mExtraYOffset * 2, mMaxTempTextPaint);
-            canvas.drawText(mTempMin, centerX + mMaxTempTextPaint.measureText(mTempMax), centerY + textBounds.height() + mExtraYOffset * 2, mMinTempTextPaint);
-            if (!mAmbient) {
-                mWeatherIcon = getIconResourceForWeatherCondition(mWeatherId);
-                canvas.drawBitmap(mWeatherIcon, centerX - mWeatherIcon.getWidth() / 2 - mMaxTempTextPaint.measureText(mTempMax), centerY + textBounds.height() + mExtraYOffset * 2 - mWeatherIcon.getHeight(), new Paint());
+            if (now < mWeatherDayStartMs || now >= mWeatherDayEndMs) {
+                // A new day, show its forecast.
+                showWeather(now);
+            }
+            mRenderer.draw(canvas, bounds, now);
+            if (mFrameCounter.onFrame(now)) {
+                Log.d(TAG, "Frames drawn in the last hour: " + mFrameCounter.getLastHourCount());
             }
-
         }
 
         /**
@@ -371,25 +338,126 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
          * Handle updating the time periodically in interactive mode.
          */
         private void handleUpdateTimeMessage() {
+            long timeMs = System.currentTimeMillis();
+            mRenderer.setShowSeconds(timeMs < mAnimationEndMs);
             invalidate();
             if (shouldTimerBeRunning()) {
-                long timeMs = System.currentTimeMillis();
-                long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                        - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
-                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
+                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME,
+                        getDelayToNextUpdate(timeMs, mAnimationEndMs));
             }
         }
 
         @Override
         public void onConnected(@Nullable Bundle bundle) {
             Wearable.DataApi.addListener(mGoogleApiClient, this);
-            Wearable.NodeApi.getLocalNode(mGoogleApiClient).setResultCallback(new ResultCallback<NodeApi.GetLocalNodeResult>() {
-                @Override
-                public void onResult(@NonNull NodeApi.GetLocalNodeResult getLocalNodeResult) {
-                    String nodeId = getLocalNodeResult.getNode().getId();
-                    Wearable.MessageApi.sendMessage(mGoogleApiClient, nodeId, KEY_WEATHER_PATH, null);
-                }
-            });
+            // Replies to our requests when the DataItem is already up to date
+            Wearable.MessageApi.addListener(mGoogleApiClient, this);
+            // The phone may have published while we weren't listening; the DataItem is still
+            // there, so read it rather than asking the phone.
+            Uri weatherUri = new Uri.Builder()
+                    .scheme(PutDataRequest.WEAR_URI_SCHEME)
+                    .path(KEY_WEATHER_PATH)
+                    .build();
+            Wearable.DataApi.getDataItems(mGoogleApiClient, weatherUri)
+                    .setResultCallback(new ResultCallback<DataItemBuffer>() {
+                        @Override
+                        public void onResult(@NonNull DataItemBuffer dataItems) {
+                            boolean changed = false;
+                            for (DataItem item : dataItems) {
+                                changed |= applyWeather(item);
+                            }
+                            dataItems.release();
+                            if (changed) {
+                                invalidate();
+                            }
+                            requestWeatherIfStale();
+                        }
+                    });
+        }
+
+        /**
+         * Asks the phones we're connected to for weather, unless what we hold is fresh.
+         */
+        private void requestWeatherIfStale() {
+            long now = System.currentTimeMillis();
+            if (mWeatherStore.isFresh(now)
+                    || now - mLastWeatherRequestMs < WEATHER_REQUEST_INTERVAL_MS
+                    || !mGoogleApiClient.isConnected()) {
+                return;
+            }
+            mLastWeatherRequestMs = now;
+            Wearable.NodeApi.getConnectedNodes(mGoogleApiClient).setResultCallback(
+                    new ResultCallback<NodeApi.GetConnectedNodesResult>() {
+                        @Override
+                        public void onResult(@NonNull NodeApi.GetConnectedNodesResult result) {
+                            if (!mGoogleApiClient.isConnected()) {
+                                return;
+                            }
+                            for (Node node : result.getNodes()) {
+                                Wearable.MessageApi.sendMessage(mGoogleApiClient, node.getId(),
+                                        KEY_WEATHER_PATH, null);
+                            }
+                        }
+                    });
+        }
+
+        /**
+         * Stores and shows the weather in a DataItem if it's not what we have already.
+         *
+         * @return true if what is shown changed, and the face needs a redraw
+         */
+        private boolean applyWeather(DataItem item) {
+            if (!KEY_WEATHER_PATH.equals(item.getUri().getPath())) {
+                return false;
+            }
+            DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
+            return applyWeather(dataMap.getByteArray(KEY_WEATHER));
+        }
+
+        /**
+         * Stores and shows an encoded {@link WeatherPayload} if it's not what we have already.
+         *
+         * @return true if what is shown changed, and the face needs a redraw
+         */
+        private boolean applyWeather(byte[] payload) {
+            return mWeatherStore.save(payload) && showWeather(System.currentTimeMillis());
+        }
+
+        /**
+         * Shows the stored forecast for the day of {@code now}, if we have one.  Only the weather
+         * region of the face is repainted on the next draw.
+         *
+         * @return true if what is shown changed
+         */
+        private boolean showWeather(long now) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(now);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            mWeatherDayStartMs = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_YEAR, 1);
+            mWeatherDayEndMs = calendar.getTimeInMillis();
+
+            WeatherPayload payload = mWeatherStore.getPayload();
+            if (payload == null) {
+                return false;
+            }
+            WeatherPayload.Day day = payload.getDay(WeatherPayload.getJulianDay(now));
+            if (day == null) {
+                return false;
+            }
+            return mRenderer.setWeather(formatTemperature(day.maxTemp, payload.isMetric()),
+                    formatTemperature(day.minTemp, payload.isMetric()), day.weatherId);
+        }
+
+        private String formatTemperature(double temperature, boolean metric) {
+            // Temperatures are sent in Celsius, along with the unit the user prefers.
+            if (!metric) {
+                temperature = (temperature * 1.8) + 32;
+            }
+            return String.format(mTemperatureFormat, temperature);
         }
 
         @Override
@@ -402,52 +470,27 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
         @Override
         public void onDataChanged(DataEventBuffer dataEventBuffer) {
+            boolean changed = false;
             for (DataEvent event : dataEventBuffer) {
                 if (event.getType() == DataEvent.TYPE_CHANGED) {
-                    DataItem item = event.getDataItem();
-                    if (item.getUri().getPath().equals(KEY_WEATHER_PATH)) {
-                        DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
-                        mTempMax = dataMap.getString(KEY_TEMP_MAX);
-                        mTempMin = dataMap.getString(KEY_TEMP_MIN);
-                        mWeatherId = dataMap.getInt(KEY_WEATHER_ID);
-
-                    }
+                    changed |= applyWeather(event.getDataItem());
                 } else if (event.getType() == DataEvent.TYPE_DELETED) {
                     // DataItem deleted
                 }
             }
-
+            if (changed) {
+                // Don't wait for the next minute to show it; one redraw for the whole batch.
+                invalidate();
+            }
         }
-    }
 
-    private Bitmap getIconResourceForWeatherCondition(int weatherId) {
-        int icRes;
-        if (weatherId >= 200 && weatherId <= 232) {
-            icRes = R.drawable.ic_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            icRes = R.drawable.ic_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            icRes = R.drawable.ic_rain;
-        } else if (weatherId == 511) {
-            icRes = R.drawable.ic_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            icRes = R.drawable.ic_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            icRes = R.drawable.ic_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            icRes = R.drawable.ic_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            icRes = R.drawable.ic_storm;
-        } else if (weatherId == 800) {
-            icRes = R.drawable.ic_clear;
-        } else if (weatherId == 801) {
-            icRes = R.drawable.ic_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            icRes = R.drawable.ic_cloudy;
-        } else {
-            icRes = R.drawable.ic_clear;
+        @Override
+        public void onMessageReceived(MessageEvent messageEvent) {
+            if (KEY_WEATHER_PATH.equals(messageEvent.getPath())) {
+                if (applyWeather(messageEvent.getData())) {
+                    invalidate();
+                }
+            }
         }
-        return Bitmap.createScaledBitmap(BitmapFactory
-                .decodeResource(getResources(), icRes), 56, 56, true);
     }
 }
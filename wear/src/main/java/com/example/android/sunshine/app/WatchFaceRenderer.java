@@ -0,0 +1,435 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Draws the Sunshine watch face.  Kept apart from the engine so that it can be driven against any
+ * canvas.
+ * <p>
+ * Everything but the time (background, date, temperatures and icon) changes at most once a day
+ * or when new weather arrives, so it is drawn into an offscreen layer and a frame is a blit of
+ * that layer plus the time.  Interactive, ambient and low-bit ambient each get their own layer
+ * since they differ in colors, anti-aliasing and content; a layer is only redrawn when the
+ * weather, the date or the size of the face changes.  New weather only repaints the region the
+ * temperatures and icon covered before and cover now.
+ * <p>
+ * Nothing is allocated on a steady-state frame: the time is written into a reused char buffer
+ * when the minute changes, the date string is rebuilt when the day changes, text is measured when
+ * it changes and icons are blitted from the {@link IconAtlas}.  Not thread safe, use from the
+ * engine's thread.
+ */
+class WatchFaceRenderer {
+    private static final Typeface NORMAL_TYPEFACE =
+            Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
+
+    private static final int LAYER_INTERACTIVE = 0;
+    private static final int LAYER_AMBIENT = 1;
+    private static final int LAYER_LOW_BIT_AMBIENT = 2;
+    private static final int LAYER_COUNT = 3;
+
+    private static final int DIRTY_WEATHER = 1;
+    private static final int DIRTY_ALL = 2 | DIRTY_WEATHER;
+
+    private static final class Layer {
+        Bitmap bitmap;
+        Canvas canvas;
+        int dirty = DIRTY_ALL;
+        // Where the weather was last drawn
+        final Rect weatherBounds = new Rect();
+    }
+
+    private final Layer[] mLayers = new Layer[LAYER_COUNT];
+
+    private final Resources mResources;
+    private final float mExtraYOffset;
+
+    private final Paint mBackgroundPaint;
+    private final Paint mTimeTextPaint;
+    private final Paint mMaxTempTextPaint;
+    private final Paint mMinTempTextPaint;
+    private final Paint mDateTextPaint;
+    private final Paint mIconPaint;
+    private final Paint mAmbientIconPaint;
+    private final Paint mLowBitIconPaint;
+
+    private final Calendar mCalendar;
+    private final SimpleDateFormat mDateFormat =
+            new SimpleDateFormat("EEE, MMM dd yyyy", Locale.ENGLISH);
+    private final Date mDate = new Date();
+
+    // "h:mm", up to "hh:mm:ss"
+    private final char[] mTimeChars = new char[8];
+    private int mTimeLength;
+    private int mTimeKey = -1;
+    private boolean mShowSeconds;
+
+    private String mDateText = "";
+    private int mDateKey = -1;
+    private final Rect mDateBounds = new Rect();
+
+    private String mTempMax = "0°";
+    private String mTempMin = "0°";
+    private float mTempMaxWidth;
+    private float mTempMinWidth;
+    private int mWeatherId;
+
+    private final IconAtlas mIconAtlas;
+    private final Rect mIconSrc = new Rect();
+    private final Rect mIconDst = new Rect();
+    private final Rect mWeatherBounds = new Rect();
+    private final Rect mDirtyBounds = new Rect();
+
+    private boolean mAmbient;
+    private boolean mLowBitAmbient;
+
+    WatchFaceRenderer(Resources resources, int backgroundColor) {
+        mResources = resources;
+        mExtraYOffset = resources.getDimension(R.dimen.digital_extra_y_offset);
+
+        mBackgroundPaint = new Paint();
+        mBackgroundPaint.setColor(backgroundColor);
+
+        mTimeTextPaint = createTextPaint(Color.WHITE, 255);
+        mMaxTempTextPaint = createTextPaint(Color.WHITE, 255);
+        mMinTempTextPaint = createTextPaint(Color.WHITE, 150);
+        mDateTextPaint = createTextPaint(Color.WHITE, 150);
+
+        mIconPaint = new Paint();
+        mIconPaint.setFilterBitmap(true);
+        // The ambient variants are coverage only, drawn in the color of the paint.
+        mAmbientIconPaint = new Paint();
+        mAmbientIconPaint.setColor(Color.WHITE);
+        mAmbientIconPaint.setAlpha(150);
+        mLowBitIconPaint = new Paint();
+        mLowBitIconPaint.setColor(Color.WHITE);
+        mIconAtlas = IconAtlas.getInstance(resources);
+
+        mCalendar = Calendar.getInstance();
+        mTempMaxWidth = mMaxTempTextPaint.measureText(mTempMax);
+        mTempMinWidth = mMinTempTextPaint.measureText(mTempMin);
+
+        for (int i = 0; i < LAYER_COUNT; i++) {
+            mLayers[i] = new Layer();
+        }
+    }
+
+    private static Paint createTextPaint(int textColor, int alpha) {
+        Paint paint = new Paint();
+        paint.setColor(textColor);
+        paint.setTypeface(NORMAL_TYPEFACE);
+        paint.setAntiAlias(true);
+        paint.setAlpha(alpha);
+        paint.setTextAlign(Paint.Align.CENTER);
+        return paint;
+    }
+
+    /**
+     * Loads the text sizes, which have alternate values for round watches.
+     */
+    void setRound(boolean isRound) {
+        mTimeTextPaint.setTextSize(mResources.getDimension(isRound
+                ? R.dimen.digital_text_size_round : R.dimen.digital_text_size));
+        float tempTextSize = mResources.getDimension(isRound
+                ? R.dimen.digital_temp_size_round : R.dimen.digital_temp_size);
+        mMaxTempTextPaint.setTextSize(tempTextSize);
+        mMinTempTextPaint.setTextSize(tempTextSize);
+        mDateTextPaint.setTextSize(mResources.getDimension(isRound
+                ? R.dimen.digital_date_size_round : R.dimen.digital_date_size));
+        mTempMaxWidth = mMaxTempTextPaint.measureText(mTempMax);
+        mTempMinWidth = mMinTempTextPaint.measureText(mTempMin);
+        // Re-measure the date at the new size.
+        mDateKey = -1;
+        markLayersDirty(DIRTY_ALL);
+    }
+
+    void setLowBitAmbient(boolean lowBitAmbient) {
+        mLowBitAmbient = lowBitAmbient;
+        updateAntiAlias();
+    }
+
+    void setAmbient(boolean ambient) {
+        mAmbient = ambient;
+        updateAntiAlias();
+    }
+
+    private void updateAntiAlias() {
+        // Displays with fewer bits for each color in ambient mode can't show anti-aliasing.
+        boolean antiAlias = !(mAmbient && mLowBitAmbient);
+        mTimeTextPaint.setAntiAlias(antiAlias);
+        mMaxTempTextPaint.setAntiAlias(antiAlias);
+        mMinTempTextPaint.setAntiAlias(antiAlias);
+        mDateTextPaint.setAntiAlias(antiAlias);
+    }
+
+    /**
+     * Whether to draw the seconds as well.  The time is drawn on top of the cached layers, so
+     * this is cheap to toggle.
+     */
+    void setShowSeconds(boolean showSeconds) {
+        if (mShowSeconds != showSeconds) {
+            mShowSeconds = showSeconds;
+            mTimeKey = -1;
+        }
+    }
+
+    void setTimeZone(TimeZone timeZone) {
+        mCalendar.setTimeZone(timeZone);
+        mDateFormat.setTimeZone(timeZone);
+        mTimeKey = -1;
+        mDateKey = -1;
+        markLayersDirty(DIRTY_ALL);
+    }
+
+    /**
+     * @return false if that is the weather shown already, in which case nothing needs redrawing
+     */
+    boolean setWeather(String tempMax, String tempMin, int weatherId) {
+        if (tempMax.equals(mTempMax) && tempMin.equals(mTempMin) && weatherId == mWeatherId) {
+            return false;
+        }
+        mTempMax = tempMax;
+        mTempMin = tempMin;
+        mWeatherId = weatherId;
+        mTempMaxWidth = mMaxTempTextPaint.measureText(tempMax);
+        mTempMinWidth = mMinTempTextPaint.measureText(tempMin);
+        markLayersDirty(DIRTY_WEATHER);
+        return true;
+    }
+
+    void draw(Canvas canvas, Rect bounds, long now) {
+        updateTime(now);
+
+        Layer layer = mLayers[!mAmbient ? LAYER_INTERACTIVE
+                : mLowBitAmbient ? LAYER_LOW_BIT_AMBIENT : LAYER_AMBIENT];
+        if (layer.bitmap == null || layer.bitmap.getWidth() != bounds.width()
+                || layer.bitmap.getHeight() != bounds.height()) {
+            layer.dirty = DIRTY_ALL;
+        }
+        if (layer.dirty != 0) {
+            drawLayer(layer, bounds);
+        }
+        canvas.drawBitmap(layer.bitmap, bounds.left, bounds.top, null);
+
+        float centerX = bounds.centerX();
+        float centerY = bounds.centerY();
+        canvas.drawText(mTimeChars, 0, mTimeLength, centerX,
+                centerY - (mDateBounds.height() / 2) - mExtraYOffset, mTimeTextPaint);
+    }
+
+    /*
+        Draws everything but the time for the current mode, or just the region of the weather if
+        nothing else changed.  The layer is in the coordinates of bounds, translated to the origin.
+     */
+    private void drawLayer(Layer layer, Rect bounds) {
+        int width = bounds.width();
+        int height = bounds.height();
+        if (layer.bitmap == null || layer.bitmap.getWidth() != width
+                || layer.bitmap.getHeight() != height) {
+            if (layer.bitmap != null) {
+                layer.bitmap.recycle();
+            }
+            // The background covers every pixel.  Ambient layers are black with gray and white
+            // text, so half the memory is plenty for them.
+            layer.bitmap = Bitmap.createBitmap(width, height,
+                    mAmbient ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888);
+            layer.bitmap.setHasAlpha(false);
+            layer.canvas = new Canvas(layer.bitmap);
+        }
+        Canvas canvas = layer.canvas;
+
+        float centerX = width / 2f;
+        float centerY = height / 2f;
+        int dateHeight = mDateBounds.height();
+        float tempY = centerY + dateHeight + mExtraYOffset * 2;
+        updateWeatherBounds(centerX, tempY);
+
+        // Everything is drawn under the clip: the date and the weather are close enough that
+        // antialiased edges may overlap.
+        boolean weatherOnly = layer.dirty == DIRTY_WEATHER;
+        if (weatherOnly) {
+            mDirtyBounds.set(layer.weatherBounds);
+            mDirtyBounds.union(mWeatherBounds);
+            canvas.save();
+            canvas.clipRect(mDirtyBounds);
+        }
+
+        // Draw the background.
+        if (mAmbient) {
+            canvas.drawColor(Color.BLACK);
+        } else {
+            canvas.drawRect(0, 0, width, height, mBackgroundPaint);
+        }
+
+        canvas.drawText(mDateText, centerX, centerY + (dateHeight / 2), mDateTextPaint);
+        canvas.drawText(mTempMax, centerX, tempY, mMaxTempTextPaint);
+        canvas.drawText(mTempMin, centerX + mTempMaxWidth, tempY, mMinTempTextPaint);
+
+        int variant;
+        Paint iconPaint;
+        if (!mAmbient) {
+            variant = IconAtlas.VARIANT_COLOR;
+            iconPaint = mIconPaint;
+        } else if (mLowBitAmbient) {
+            variant = IconAtlas.VARIANT_MONO;
+            iconPaint = mLowBitIconPaint;
+        } else {
+            variant = IconAtlas.VARIANT_GRAY;
+            iconPaint = mAmbientIconPaint;
+        }
+        IconAtlas.getIconRect(getIconResourceForWeatherCondition(mWeatherId), mIconSrc);
+        canvas.drawBitmap(mIconAtlas.getAtlas(variant), mIconSrc, mIconDst, iconPaint);
+
+        if (weatherOnly) {
+            canvas.restore();
+        }
+        layer.weatherBounds.set(mWeatherBounds);
+        layer.dirty = 0;
+    }
+
+    /*
+        Places the icon and sets mWeatherBounds to cover it and the temperatures.
+     */
+    private void updateWeatherBounds(float centerX, float tempY) {
+        int iconLeft = Math.round(centerX - IconAtlas.ICON_SIZE / 2 - mTempMaxWidth);
+        int iconTop = Math.round(tempY - IconAtlas.ICON_SIZE);
+        mIconDst.set(iconLeft, iconTop,
+                iconLeft + IconAtlas.ICON_SIZE, iconTop + IconAtlas.ICON_SIZE);
+
+        // Both temperatures are centered on their x, and share a text size.
+        float textLeft = centerX - mTempMaxWidth / 2;
+        float textRight = centerX + mTempMaxWidth + mTempMinWidth / 2;
+        float textTop = tempY + mMaxTempTextPaint.ascent();
+        float textBottom = tempY + mMaxTempTextPaint.descent();
+        mWeatherBounds.set(mIconDst);
+        mWeatherBounds.union((int) Math.floor(textLeft), (int) Math.floor(textTop),
+                (int) Math.ceil(textRight), (int) Math.ceil(textBottom));
+        // Room for antialiasing
+        mWeatherBounds.inset(-1, -1);
+    }
+
+    private void markLayersDirty(int dirty) {
+        for (Layer layer : mLayers) {
+            layer.dirty |= dirty;
+        }
+    }
+
+    /**
+     * Frees the layers.  They are recreated on the next draw.  The icon atlas is shared by the
+     * process and kept.
+     */
+    void release() {
+        for (Layer layer : mLayers) {
+            if (layer.bitmap != null) {
+                layer.bitmap.recycle();
+                layer.bitmap = null;
+                layer.canvas = null;
+            }
+            layer.dirty = DIRTY_ALL;
+        }
+    }
+
+    /**
+     * @return the bytes held by the layers and the icon atlas, for measuring
+     */
+    int getBitmapByteCount() {
+        int bytes = 0;
+        for (Layer layer : mLayers) {
+            if (layer.bitmap != null) {
+                bytes += layer.bitmap.getByteCount();
+            }
+        }
+        return bytes + mIconAtlas.getByteCount();
+    }
+
+    private void updateTime(long now) {
+        mCalendar.setTimeInMillis(now);
+
+        int hour = mCalendar.get(Calendar.HOUR);
+        int minute = mCalendar.get(Calendar.MINUTE);
+        int second = mShowSeconds ? mCalendar.get(Calendar.SECOND) : 0;
+        int timeKey = (hour * 60 + minute) * 60 + second;
+        if (timeKey != mTimeKey) {
+            mTimeKey = timeKey;
+            // Same as String.format(Locale.ENGLISH, "%d:%02d", hour, minute), plus ":%02d"
+            // with the seconds
+            int length = 0;
+            if (hour >= 10) {
+                mTimeChars[length++] = (char) ('0' + hour / 10);
+            }
+            mTimeChars[length++] = (char) ('0' + hour % 10);
+            mTimeChars[length++] = ':';
+            mTimeChars[length++] = (char) ('0' + minute / 10);
+            mTimeChars[length++] = (char) ('0' + minute % 10);
+            if (mShowSeconds) {
+                mTimeChars[length++] = ':';
+                mTimeChars[length++] = (char) ('0' + second / 10);
+                mTimeChars[length++] = (char) ('0' + second % 10);
+            }
+            mTimeLength = length;
+        }
+
+        int dateKey = mCalendar.get(Calendar.YEAR) * 1000 + mCalendar.get(Calendar.DAY_OF_YEAR);
+        if (dateKey != mDateKey) {
+            mDateKey = dateKey;
+            mDate.setTime(now);
+            mDateText = mDateFormat.format(mDate);
+            mDateTextPaint.getTextBounds(mDateText, 0, mDateText.length(), mDateBounds);
+            markLayersDirty(DIRTY_ALL);
+        }
+    }
+
+    static int getIconResourceForWeatherCondition(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.ic_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.ic_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.ic_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.ic_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.ic_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.ic_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.ic_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.ic_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.ic_cloudy;
+        }
+        return R.drawable.ic_clear;
+    }
+}
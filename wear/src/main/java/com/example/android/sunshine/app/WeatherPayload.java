@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.text.format.Time;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * The weather sent to the watch: raw temperatures, the unit to show them in and the condition,
+ * for today and the following days, with the time the phone published it.  The watch formats it
+ * itself, so identical weather encodes to identical bytes but for the time, and
+ * {@link #hash(byte[])}, which leaves the time out, only changes when the weather does.
+ * <p>
+ * The app module has a copy of this class; the two must stay in sync.
+ * <pre>
+ * byte   version
+ * byte   flags         FLAG_METRIC
+ * long   publishedTime millis since the epoch
+ * byte   count
+ * count times:
+ *   int    julianDay   local day of the forecast
+ *   short  maxTemp     Celsius, tenths of a degree
+ *   short  minTemp     Celsius, tenths of a degree
+ *   short  weatherId   OpenWeatherMap condition id
+ * </pre>
+ */
+class WeatherPayload {
+    static final int VERSION = 2;
+    static final int MAX_DAYS = 7;
+
+    private static final int FLAG_METRIC = 1;
+    private static final int TIME_OFFSET = 2;
+    private static final int TIME_SIZE = 8;
+    private static final int HEADER_SIZE = 11;
+    private static final int DAY_SIZE = 10;
+
+    static final class Day {
+        final int julianDay;
+        final double maxTemp;
+        final double minTemp;
+        final int weatherId;
+
+        Day(int julianDay, double maxTemp, double minTemp, int weatherId) {
+            this.julianDay = julianDay;
+            this.maxTemp = maxTemp;
+            this.minTemp = minTemp;
+            this.weatherId = weatherId;
+        }
+    }
+
+    private final long mPublishedTime;
+    private final boolean mMetric;
+    private final List<Day> mDays;
+
+    /**
+     * A payload published now.
+     */
+    WeatherPayload(boolean metric, List<Day> days) {
+        this(System.currentTimeMillis(), metric, days);
+    }
+
+    WeatherPayload(long publishedTime, boolean metric, List<Day> days) {
+        mPublishedTime = publishedTime;
+        mMetric = metric;
+        mDays = Collections.unmodifiableList(
+                new ArrayList<>(days.subList(0, Math.min(days.size(), MAX_DAYS))));
+    }
+
+    /**
+     * @return when the phone published this weather, in millis since the epoch
+     */
+    long getPublishedTime() {
+        return mPublishedTime;
+    }
+
+    /**
+     * @return whether temperatures are to be shown in Celsius
+     */
+    boolean isMetric() {
+        return mMetric;
+    }
+
+    List<Day> getDays() {
+        return mDays;
+    }
+
+    /**
+     * @return the forecast for a day, or null if the payload doesn't cover it
+     */
+    Day getDay(int julianDay) {
+        for (Day day : mDays) {
+            if (day.julianDay == julianDay) {
+                return day;
+            }
+        }
+        return null;
+    }
+
+    byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + DAY_SIZE * mDays.size());
+        buffer.put((byte) VERSION);
+        buffer.put((byte) (mMetric ? FLAG_METRIC : 0));
+        buffer.putLong(mPublishedTime);
+        buffer.put((byte) mDays.size());
+        for (Day day : mDays) {
+            buffer.putInt(day.julianDay);
+            buffer.putShort(toTenths(day.maxTemp));
+            buffer.putShort(toTenths(day.minTemp));
+            buffer.putShort((short) day.weatherId);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @return the decoded payload, or null if the bytes are not a payload of a version we know
+     */
+    static WeatherPayload fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length < HEADER_SIZE || bytes[0] != VERSION) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            buffer.get();
+            boolean metric = (buffer.get() & FLAG_METRIC) != 0;
+            long publishedTime = buffer.getLong();
+            int count = buffer.get() & 0xff;
+            List<Day> days = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int julianDay = buffer.getInt();
+                double maxTemp = buffer.getShort() / 10.0;
+                double minTemp = buffer.getShort() / 10.0;
+                int weatherId = buffer.getShort();
+                days.add(new Day(julianDay, maxTemp, minTemp, weatherId));
+            }
+            return new WeatherPayload(publishedTime, metric, days);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return a hash of the encoded payload without its published time, equal for payloads that
+     * carry the same weather
+     */
+    static int hash(byte[] bytes) {
+        int hash = 1;
+        for (int i = 0; i < bytes.length; i++) {
+            if (i < TIME_OFFSET || i >= TIME_OFFSET + TIME_SIZE) {
+                hash = 31 * hash + bytes[i];
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return the local julian day of a time, as used in the payload
+     */
+    static int getJulianDay(long millis) {
+        long gmtOffSeconds = TimeZone.getDefault().getOffset(millis) / 1000;
+        return Time.getJulianDay(millis, gmtOffSeconds);
+    }
+
+    private static short toTenths(double temperature) {
+        return (short) Math.round(temperature * 10);
+    }
+}
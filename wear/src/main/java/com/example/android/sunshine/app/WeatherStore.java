@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2014 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Base64;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The last weather received from the phone, persisted so that the face can show it as soon as
+ * it's created instead of placeholders, and so that we only ask the phone when it's stale.
+ */
+class WeatherStore {
+    private static final String PREFS_NAME = "weather";
+    private static final String KEY_PAYLOAD = "payload";
+    // Two of the phone's sync intervals: a phone that is reachable will have published since
+    static final long MAX_AGE_MS = TimeUnit.HOURS.toMillis(6);
+
+    private final SharedPreferences mPrefs;
+
+    private byte[] mBytes;
+    private WeatherPayload mPayload;
+
+    WeatherStore(Context context) {
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String encoded = mPrefs.getString(KEY_PAYLOAD, null);
+        if (encoded != null) {
+            mBytes = Base64.decode(encoded, Base64.NO_WRAP);
+            mPayload = WeatherPayload.fromBytes(mBytes);
+        }
+    }
+
+    /**
+     * @return the last weather received, null if none
+     */
+    WeatherPayload getPayload() {
+        return mPayload;
+    }
+
+    /**
+     * Freshness policy: the phone publishes after each of its syncs, so what we hold is fresh
+     * if it was published less than {@link #MAX_AGE_MS} ago and has a forecast for today.  The
+     * later days of the payload are what the face shows when the phone can't be reached.
+     */
+    boolean isFresh(long now) {
+        return mPayload != null
+                && now - mPayload.getPublishedTime() < MAX_AGE_MS
+                && mPayload.getDay(WeatherPayload.getJulianDay(now)) != null;
+    }
+
+    /**
+     * @return false if the payload is what we already hold, was published before it, or can't
+     * be read, in which case it is ignored
+     */
+    boolean save(byte[] bytes) {
+        if (Arrays.equals(bytes, mBytes)) {
+            return false;
+        }
+        WeatherPayload payload = WeatherPayload.fromBytes(bytes);
+        if (payload == null) {
+            return false;
+        }
+        // A DataItem read on connect can be older than a reply we already have
+        if (mPayload != null && payload.getPublishedTime() < mPayload.getPublishedTime()) {
+            return false;
+        }
+        mBytes = bytes;
+        mPayload = payload;
+        mPrefs.edit()
+                .putString(KEY_PAYLOAD, Base64.encodeToString(bytes, Base64.NO_WRAP))
+                .apply();
+        return true;
+    }
+}